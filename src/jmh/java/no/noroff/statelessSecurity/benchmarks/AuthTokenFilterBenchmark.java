@@ -0,0 +1,82 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import no.noroff.statelessSecurity.securityUtil.jwt.AuthTokenFilter;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.jwt.PrincipalMode;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+/*
+ One authenticated request through AuthTokenFilter, using mocked servlet objects.
+ In DATABASE mode the user comes from UserDetailsCache in front of a service that does not touch a database,
+ so this measures the filter itself and not the database.
+ doFilterPublicRoute sends the same token to a public route, which RouteTable lets the filter skip.
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthTokenFilterBenchmark {
+
+	@Param({"DATABASE", "TOKEN"})
+	public PrincipalMode principalMode;
+
+	@Param({"false", "true"})
+	public boolean tokenCache;
+
+	private AuthTokenFilter filter;
+	private MockHttpServletRequest request;
+	private MockHttpServletRequest publicRequest;
+	private MockHttpServletResponse response;
+	private final FilterChain chain = (servletRequest, servletResponse) -> { };
+
+	@Setup
+	public void setUp() {
+		UserDetailsImpl user = BenchmarkFixtures.user();
+		JwtUtil jwtUtil = BenchmarkFixtures.jwtUtil(principalMode, tokenCache);
+		filter = new AuthTokenFilter();
+		setField(filter, "jwtUtil", jwtUtil);
+		setField(filter, "userDetailsCache", BenchmarkFixtures.userDetailsCache(user, true));
+		setField(filter, "authMetrics", BenchmarkFixtures.authMetrics());
+		setField(filter, "invalidTokenLogger", BenchmarkFixtures.invalidTokenLogger());
+		setField(filter, "routeTable", BenchmarkFixtures.routeTable());
+
+		String token = jwtUtil.generateJwtToken(BenchmarkFixtures.authentication(user));
+		request = new MockHttpServletRequest("GET", "/api/test/user");
+		request.setServletPath("/api/test/user");
+		request.addHeader("Authorization", "Bearer " + token);
+		// The same token sent to a public route, which the filter leaves alone
+		publicRequest = new MockHttpServletRequest("GET", "/api/test/all");
+		publicRequest.setServletPath("/api/test/all");
+		publicRequest.addHeader("Authorization", "Bearer " + token);
+		response = new MockHttpServletResponse();
+	}
+
+	@Benchmark
+	public Object doFilter() throws ServletException, IOException {
+		filter.doFilter(request, response, chain);
+		Object authentication = SecurityContextHolder.getContext().getAuthentication();
+		SecurityContextHolder.clearContext();
+		return authentication;
+	}
+
+	@Benchmark
+	public Object doFilterPublicRoute() throws ServletException, IOException {
+		filter.doFilter(publicRequest, response, chain);
+		Object authentication = SecurityContextHolder.getContext().getAuthentication();
+		SecurityContextHolder.clearContext();
+		return authentication;
+	}
+}
@@ -0,0 +1,84 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import no.noroff.statelessSecurity.controllers.TestController;
+import no.noroff.statelessSecurity.securityUtil.access.CompiledAccessDecisionManager;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.annotation.Jsr250MethodSecurityMetadataSource;
+import org.springframework.security.access.annotation.Jsr250Voter;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.ExpressionBasedAnnotationAttributeFactory;
+import org.springframework.security.access.expression.method.ExpressionBasedPreInvocationAdvice;
+import org.springframework.security.access.method.DelegatingMethodSecurityMetadataSource;
+import org.springframework.security.access.method.MethodSecurityMetadataSource;
+import org.springframework.security.access.prepost.PreInvocationAuthorizationAdviceVoter;
+import org.springframework.security.access.prepost.PrePostAnnotationSecurityMetadataSource;
+import org.springframework.security.access.vote.AffirmativeBased;
+import org.springframework.security.access.vote.AuthenticatedVoter;
+import org.springframework.security.access.vote.RoleVoter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ Deciding whether a user with the USER and ADMIN roles may call an endpoint of TestController.
+ spel uses the voters Spring's method security sets up, compiled uses CompiledAccessDecisionManager.
+ userAccess is annotated with @RolesAllowed and adminAccess with @PreAuthorize.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AuthorizationBenchmark {
+
+	@Param({"userAccess", "adminAccess"})
+	private String endpoint;
+
+	private AccessDecisionManager spel;
+	private CompiledAccessDecisionManager compiled;
+	private Authentication authentication;
+	private MethodInvocation invocation;
+	private Collection<ConfigAttribute> attributes;
+
+	@Setup
+	public void setUp() throws Exception {
+		// As GlobalMethodSecurityConfiguration builds them with prePostEnabled and jsr250Enabled
+		MethodSecurityMetadataSource metadataSource = new DelegatingMethodSecurityMetadataSource(List.of(
+				new PrePostAnnotationSecurityMetadataSource(
+						new ExpressionBasedAnnotationAttributeFactory(new DefaultMethodSecurityExpressionHandler())),
+				new Jsr250MethodSecurityMetadataSource()));
+		ExpressionBasedPreInvocationAdvice advice = new ExpressionBasedPreInvocationAdvice();
+		advice.setExpressionHandler(new DefaultMethodSecurityExpressionHandler());
+		spel = new AffirmativeBased(List.of(new PreInvocationAuthorizationAdviceVoter(advice),
+				new Jsr250Voter(), new RoleVoter(), new AuthenticatedVoter()));
+
+		Method method = TestController.class.getMethod(endpoint);
+		compiled = new CompiledAccessDecisionManager(spel);
+		compiled.compile(Map.of(method, TestController.class), metadataSource);
+
+		authentication = BenchmarkFixtures.authentication(BenchmarkFixtures.user());
+		invocation = new SimpleMethodInvocation(new TestController(), method);
+		attributes = metadataSource.getAttributes(method, TestController.class);
+	}
+
+	@Benchmark
+	public Object spel() {
+		spel.decide(authentication, invocation, attributes);
+		return invocation;
+	}
+
+	@Benchmark
+	public Object compiled() {
+		compiled.decide(authentication, invocation, attributes);
+		return invocation;
+	}
+}
@@ -0,0 +1,180 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import no.noroff.statelessSecurity.securityUtil.access.RouteTable;
+import no.noroff.statelessSecurity.securityUtil.jwt.ClaimProfile;
+import no.noroff.statelessSecurity.securityUtil.jwt.InMemoryJwtKeyStore;
+import no.noroff.statelessSecurity.securityUtil.jwt.InvalidTokenLogger;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtEngine;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtKeyManager;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtTokenCache;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.jwt.PrincipalMode;
+import no.noroff.statelessSecurity.securityUtil.jwt.TokenEpochRegistry;
+import no.noroff.statelessSecurity.securityUtil.jwt.TokenRevocationStore;
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsCache;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+/*
+ Builds the beans under test the way Spring would, without starting an application context.
+ Values match application.properties.
+*/
+final class BenchmarkFixtures {
+
+	static final String SECRET = "NoroffSecretKey";
+	static final int EXPIRATION_MS = 10800000;
+
+	static {
+		// Without Spring Boot's logging setup logback logs everything at DEBUG
+		((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+	}
+
+	private BenchmarkFixtures() {
+	}
+
+	static UserDetailsImpl user() {
+		return new UserDetailsImpl(1L, "benchmark", "benchmark@noroff.no", "hash",
+				List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN")), 0);
+	}
+
+	static Authentication authentication(UserDetailsImpl user) {
+		return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+	}
+
+	// Records into a Prometheus registry with histogram buckets, as configured in application.properties
+	static AuthMetrics authMetrics() {
+		PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+		registry.config().meterFilter(new MeterFilter() {
+			@Override
+			public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+				return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+			}
+		});
+		AuthMetrics authMetrics = new AuthMetrics();
+		setField(authMetrics, "registry", registry);
+		authMetrics.init();
+		return authMetrics;
+	}
+
+	static InvalidTokenLogger invalidTokenLogger() {
+		InvalidTokenLogger invalidTokenLogger = new InvalidTokenLogger();
+		setField(invalidTokenLogger, "logsPerMinute", 60);
+		return invalidTokenLogger;
+	}
+
+	// Kept in memory only
+	static TokenRevocationStore revocationStore() {
+		TokenRevocationStore revocationStore = new TokenRevocationStore();
+		setField(revocationStore, "bucketMs", 60000L);
+		setField(revocationStore, "expectedTokens", 100000);
+		setField(revocationStore, "file", "");
+		revocationStore.init();
+		return revocationStore;
+	}
+
+	// Without a database to load from, so the epochs of some other users are put in by hand
+	static TokenEpochRegistry tokenEpochRegistry(int users) {
+		TokenEpochRegistry tokenEpochRegistry = new TokenEpochRegistry();
+		for (long userId = 2; userId < users + 2; userId++) {
+			tokenEpochRegistry.put(userId, 1);
+		}
+		return tokenEpochRegistry;
+	}
+
+	// The routes of TestController as RouteTable classifies them at startup
+	static RouteTable routeTable() {
+		RouteTable routeTable = new RouteTable();
+		setField(routeTable, "routes", Map.of(
+				"/api/test/all", RouteTable.Access.PUBLIC,
+				"/api/test/user", RouteTable.Access.ROLE_GATED,
+				"/api/test/mod", RouteTable.Access.ROLE_GATED,
+				"/api/test/admin", RouteTable.Access.ROLE_GATED));
+		return routeTable;
+	}
+
+	static JwtTokenCache tokenCache(boolean enabled) {
+		JwtTokenCache tokenCache = new JwtTokenCache();
+		setField(tokenCache, "enabled", enabled);
+		setField(tokenCache, "maxSize", 10000L);
+		tokenCache.init();
+		return tokenCache;
+	}
+
+	static JwtKeyManager keyManager(SignatureAlgorithm algorithm) {
+		JwtKeyManager keyManager = new JwtKeyManager();
+		setField(keyManager, "jwtSecret", SECRET);
+		setField(keyManager, "jwtExpirationMs", EXPIRATION_MS);
+		setField(keyManager, "algorithm", algorithm);
+		setField(keyManager, "keyRotationMs", 86400000L);
+		setField(keyManager, "keyStore", new InMemoryJwtKeyStore());
+		keyManager.init();
+		return keyManager;
+	}
+
+	static JwtUtil jwtUtil(PrincipalMode principalMode, boolean tokenCacheEnabled) {
+		return jwtUtil(principalMode, tokenCacheEnabled, SignatureAlgorithm.HS512);
+	}
+
+	static JwtUtil jwtUtil(PrincipalMode principalMode, boolean tokenCacheEnabled, SignatureAlgorithm algorithm) {
+		return jwtUtil(principalMode, tokenCacheEnabled, algorithm, ClaimProfile.STANDARD);
+	}
+
+	static JwtUtil jwtUtil(PrincipalMode principalMode, boolean tokenCacheEnabled, SignatureAlgorithm algorithm,
+			ClaimProfile claimProfile) {
+		return jwtUtil(principalMode, tokenCacheEnabled, algorithm, claimProfile, JwtEngine.JJWT);
+	}
+
+	static JwtUtil jwtUtil(PrincipalMode principalMode, boolean tokenCacheEnabled, SignatureAlgorithm algorithm,
+			ClaimProfile claimProfile, JwtEngine engine) {
+		JwtUtil jwtUtil = new JwtUtil();
+		setField(jwtUtil, "keyManager", keyManager(algorithm));
+		setField(jwtUtil, "jwtExpirationMs", EXPIRATION_MS);
+		setField(jwtUtil, "principalMode", principalMode);
+		setField(jwtUtil, "jwtMaxLength", 4096);
+		setField(jwtUtil, "claimProfile", claimProfile);
+		setField(jwtUtil, "engine", engine);
+		setField(jwtUtil, "tokenCache", tokenCache(tokenCacheEnabled));
+		setField(jwtUtil, "authMetrics", authMetrics());
+		setField(jwtUtil, "invalidTokenLogger", invalidTokenLogger());
+		setField(jwtUtil, "revocationStore", revocationStore());
+		setField(jwtUtil, "tokenEpochRegistry", tokenEpochRegistry(1000));
+		jwtUtil.init();
+		return jwtUtil;
+	}
+
+	// A UserDetailsCache in front of a service that always returns the given user instead of querying a database
+	static UserDetailsCache userDetailsCache(UserDetails user, boolean enabled) {
+		UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl() {
+			@Override
+			public UserDetails loadUserByUsername(String username) {
+				return user;
+			}
+		};
+		UserDetailsCache userDetailsCache = new UserDetailsCache();
+		setField(userDetailsCache, "userDetailsService", userDetailsService);
+		setField(userDetailsCache, "enabled", enabled);
+		setField(userDetailsCache, "ttlMs", 60000L);
+		setField(userDetailsCache, "maxSize", 10000L);
+		userDetailsCache.init();
+		return userDetailsCache;
+	}
+}
@@ -0,0 +1,63 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.jwt.ParsedJwt;
+import no.noroff.statelessSecurity.securityUtil.jwt.PrincipalMode;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/*
+ The cost of turning away a bad token, which is what a flood of garbage bearer tokens makes us do.
+ Logging is switched off, so this is the cost of the checks alone.
+    - GARBAGE is not a JWT at all
+    - ALG_NONE is an unsigned token claiming the "none" algorithm
+    - BAD_SIGNATURE is one of our tokens with its signature changed
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InvalidTokenBenchmark {
+
+	public enum Kind {
+		GARBAGE, ALG_NONE, BAD_SIGNATURE
+	}
+
+	@Param({"GARBAGE", "ALG_NONE", "BAD_SIGNATURE"})
+	public Kind kind;
+
+	private JwtUtil jwtUtil;
+	private String token;
+
+	@Setup
+	public void setUp() {
+		((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("no.noroff")).setLevel(Level.OFF);
+		jwtUtil = BenchmarkFixtures.jwtUtil(PrincipalMode.DATABASE, true);
+		String valid = jwtUtil.generateJwtToken(BenchmarkFixtures.authentication(BenchmarkFixtures.user()));
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		switch (kind) {
+			case GARBAGE:
+				token = "garbage!" + "x".repeat(200);
+				break;
+			case ALG_NONE:
+				token = encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8))
+						+ valid.substring(valid.indexOf('.'), valid.lastIndexOf('.') + 1);
+				break;
+			default:
+				char last = valid.charAt(valid.length() - 2);
+				token = valid.substring(0, valid.length() - 2) + (last == 'A' ? 'B' : 'A') + valid.charAt(valid.length() - 1);
+		}
+	}
+
+	@Benchmark
+	public ParsedJwt parseJwtToken() {
+		return jwtUtil.parseJwtToken(token);
+	}
+}
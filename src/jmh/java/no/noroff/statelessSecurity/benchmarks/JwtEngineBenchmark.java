@@ -0,0 +1,61 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import no.noroff.statelessSecurity.securityUtil.jwt.ClaimProfile;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtEngine;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.jwt.ParsedJwt;
+import no.noroff.statelessSecurity.securityUtil.jwt.PrincipalMode;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.Authentication;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ Signing and verifying HS512 tokens with jjwt and with our own codec, without the token cache so every parse
+ verifies the signature. badSignature is a token with its last character changed, which jjwt reports by
+ throwing and the codec by returning.
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtEngineBenchmark {
+
+	@Param({"JJWT", "NATIVE"})
+	public JwtEngine engine;
+
+	@Param({"DATABASE", "TOKEN"})
+	public PrincipalMode principalMode;
+
+	private JwtUtil jwtUtil;
+	private Authentication authentication;
+	private String token;
+	private String badSignature;
+
+	@Setup
+	public void setUp() {
+		jwtUtil = BenchmarkFixtures.jwtUtil(principalMode, false, SignatureAlgorithm.HS512, ClaimProfile.STANDARD, engine);
+		authentication = BenchmarkFixtures.authentication(BenchmarkFixtures.user());
+		token = jwtUtil.generateJwtToken(authentication);
+		char last = token.charAt(token.length() - 1);
+		badSignature = token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A');
+	}
+
+	@Benchmark
+	public String generateJwtToken() {
+		return jwtUtil.generateJwtToken(authentication);
+	}
+
+	@Benchmark
+	public ParsedJwt parseJwtToken() {
+		return jwtUtil.parseJwtToken(token);
+	}
+
+	@Benchmark
+	public ParsedJwt parseBadSignature() {
+		return jwtUtil.parseJwtToken(badSignature);
+	}
+}
@@ -0,0 +1,59 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.jwt.ParsedJwt;
+import no.noroff.statelessSecurity.securityUtil.jwt.PrincipalMode;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.Authentication;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ Creating and verifying tokens. validateAndGetUserName is the pair of calls AuthTokenFilter used to make,
+ parseJwtToken is the single call it makes now. The algorithm shows what signing and verifying cost with
+ the shared secret and with each kind of asymmetric key.
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+
+	@Param({"DATABASE", "TOKEN"})
+	public PrincipalMode principalMode;
+
+	@Param({"false", "true"})
+	public boolean tokenCache;
+
+	@Param({"HS512", "RS256", "ES256"})
+	public SignatureAlgorithm algorithm;
+
+	private JwtUtil jwtUtil;
+	private Authentication authentication;
+	private String token;
+
+	@Setup
+	public void setUp() {
+		jwtUtil = BenchmarkFixtures.jwtUtil(principalMode, tokenCache, algorithm);
+		authentication = BenchmarkFixtures.authentication(BenchmarkFixtures.user());
+		token = jwtUtil.generateJwtToken(authentication);
+	}
+
+	@Benchmark
+	public String generateJwtToken() {
+		return jwtUtil.generateJwtToken(authentication);
+	}
+
+	@Benchmark
+	public ParsedJwt parseJwtToken() {
+		return jwtUtil.parseJwtToken(token);
+	}
+
+	@Benchmark
+	public String validateAndGetUserName() {
+		return jwtUtil.validateJwtToken(token) ? jwtUtil.getUserNameFromJwtToken(token) : null;
+	}
+}
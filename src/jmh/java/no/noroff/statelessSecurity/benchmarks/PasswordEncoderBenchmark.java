@@ -0,0 +1,40 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import no.noroff.statelessSecurity.securityUtil.services.CalibratedBCryptPasswordEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// BCrypt hashing (signup) and matching (signin) at different strengths, every step up doubles the time
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordEncoderBenchmark {
+
+	private static final String PASSWORD = "benchmark-password";
+
+	@Param({"4", "8", "10", "12"})
+	public int strength;
+
+	private CalibratedBCryptPasswordEncoder encoder;
+	private String hash;
+
+	@Setup
+	public void setUp() {
+		encoder = new CalibratedBCryptPasswordEncoder(strength);
+		hash = encoder.encode(PASSWORD);
+	}
+
+	@Benchmark
+	public String encode() {
+		return encoder.encode(PASSWORD);
+	}
+
+	@Benchmark
+	public boolean matches() {
+		return encoder.matches(PASSWORD, hash);
+	}
+}
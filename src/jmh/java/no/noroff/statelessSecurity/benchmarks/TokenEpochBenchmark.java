@@ -0,0 +1,40 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import no.noroff.statelessSecurity.securityUtil.jwt.TokenEpochRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ The epoch lookup every authenticated request makes, with this many users whose epoch was raised.
+ unchanged looks up users that are not in the table, changed looks up users that are.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenEpochBenchmark {
+
+	@Param({"1000", "1000000"})
+	private int changedUsers;
+
+	private TokenEpochRegistry tokenEpochRegistry;
+	private long next;
+
+	@Setup
+	public void setUp() {
+		tokenEpochRegistry = BenchmarkFixtures.tokenEpochRegistry(changedUsers);
+	}
+
+	@Benchmark
+	public int unchanged() {
+		return tokenEpochRegistry.get(changedUsers + 2 + (next++ & 1023));
+	}
+
+	@Benchmark
+	public int changed() {
+		return tokenEpochRegistry.get(2 + (next++ * 7919) % changedUsers);
+	}
+}
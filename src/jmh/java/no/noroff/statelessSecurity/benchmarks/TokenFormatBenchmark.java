@@ -0,0 +1,49 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import no.noroff.statelessSecurity.securityUtil.jwt.ClaimProfile;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.jwt.ParsedJwt;
+import no.noroff.statelessSecurity.securityUtil.jwt.PrincipalMode;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.Authentication;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ Creating and verifying a TOKEN mode token in each claim profile, without the token cache so every parse
+ verifies the signature. The length of the token, which is what every request sends in its Authorization
+ header, is printed when the trial starts.
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenFormatBenchmark {
+
+	@Param({"STANDARD", "COMPACT"})
+	public ClaimProfile claimProfile;
+
+	private JwtUtil jwtUtil;
+	private Authentication authentication;
+	private String token;
+
+	@Setup
+	public void setUp() {
+		jwtUtil = BenchmarkFixtures.jwtUtil(PrincipalMode.TOKEN, false, SignatureAlgorithm.HS512, claimProfile);
+		authentication = BenchmarkFixtures.authentication(BenchmarkFixtures.user());
+		token = jwtUtil.generateJwtToken(authentication);
+	}
+
+	@Benchmark
+	public String generateJwtToken() {
+		return jwtUtil.generateJwtToken(authentication);
+	}
+
+	@Benchmark
+	public ParsedJwt parseJwtToken() {
+		return jwtUtil.parseJwtToken(token);
+	}
+}
@@ -0,0 +1,55 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import no.noroff.statelessSecurity.securityUtil.jwt.TokenRevocationStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ The revocation check every authenticated request makes, with as many tokens revoked as the store expects.
+ notRevoked is the common case and is answered by the Bloom filter, revoked also looks in the buckets.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenRevocationBenchmark {
+
+	private static final int REVOKED = 100000;
+
+	private TokenRevocationStore revocationStore;
+	private final String[] notRevoked = new String[1024];
+	private final String[] revoked = new String[1024];
+	private long expirationMs;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		revocationStore = BenchmarkFixtures.revocationStore();
+		expirationMs = System.currentTimeMillis() + BenchmarkFixtures.EXPIRATION_MS;
+		for (int i = 0; i < REVOKED; i++) {
+			String jti = UUID.randomUUID().toString();
+			revocationStore.revoke(jti, expirationMs - i * 100L);
+			if (i < revoked.length) {
+				revoked[i] = jti;
+			}
+		}
+		for (int i = 0; i < notRevoked.length; i++) {
+			notRevoked[i] = UUID.randomUUID().toString();
+		}
+	}
+
+	@Benchmark
+	public boolean notRevoked() {
+		return revocationStore.isRevoked(notRevoked[next++ & 1023], expirationMs);
+	}
+
+	@Benchmark
+	public boolean revoked() {
+		int i = next++ & 1023;
+		return revocationStore.isRevoked(revoked[i], expirationMs - i * 100L);
+	}
+}
@@ -0,0 +1,67 @@
+package no.noroff.statelessSecurity.benchmarks;
+
+import no.noroff.statelessSecurity.models.domain.Role;
+import no.noroff.statelessSecurity.models.domain.RoleType;
+import no.noroff.statelessSecurity.models.domain.User;
+import no.noroff.statelessSecurity.models.dto.UserAuthRow;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/*
+ Turning a user from the database into UserDetailsImpl, from the entity and from the single query rows.
+ And asking a built user whether they have a role, through the role mask and by going through the authorities
+ comparing names, as Spring Security's hasRole does.
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserDetailsImplBenchmark {
+
+	private User user;
+	private List<UserAuthRow> rows;
+	private UserDetailsImpl built;
+
+	@Setup
+	public void setUp() {
+		user = new User("benchmark", "benchmark@noroff.no", "hash");
+		user.setId(1L);
+		user.setRoles(Set.of(new Role(RoleType.ROLE_USER), new Role(RoleType.ROLE_ADMIN)));
+		rows = List.of(
+				new UserAuthRow(1L, "benchmark", "benchmark@noroff.no", "hash", 0, RoleType.ROLE_USER),
+				new UserAuthRow(1L, "benchmark", "benchmark@noroff.no", "hash", 0, RoleType.ROLE_ADMIN));
+		built = UserDetailsImpl.build(user);
+	}
+
+	@Benchmark
+	public UserDetailsImpl buildFromUser() {
+		return UserDetailsImpl.build(user);
+	}
+
+	@Benchmark
+	public UserDetailsImpl buildFromRows() {
+		return UserDetailsImpl.build(rows);
+	}
+
+	@Benchmark
+	public boolean hasRole() {
+		return built.hasRole(RoleType.ROLE_MODERATOR);
+	}
+
+	@Benchmark
+	public boolean hasRoleByAuthorities() {
+		for (GrantedAuthority authority : built.getAuthorities()) {
+			if ("ROLE_MODERATOR".equals(authority.getAuthority())) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
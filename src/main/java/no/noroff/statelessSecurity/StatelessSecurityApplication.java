@@ -2,8 +2,10 @@ package no.noroff.statelessSecurity;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class StatelessSecurityApplication {
 
 	public static void main(String[] args) {
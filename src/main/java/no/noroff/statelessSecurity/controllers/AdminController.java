@@ -0,0 +1,71 @@
+package no.noroff.statelessSecurity.controllers;
+
+import no.noroff.statelessSecurity.models.dto.MessageResponse;
+import no.noroff.statelessSecurity.models.dto.UserImportReport;
+import no.noroff.statelessSecurity.services.UserAccountService;
+import no.noroff.statelessSecurity.services.UserImportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+/*
+    This is our controller for administering users, only admins may use it.
+    Users can be imported in bulk, either as a JSON array or as newline delimited JSON with one
+    SignupRequest per line. The body is read one batch of records at a time, but the report holds a result for
+    every record, so very large imports should be split into several requests.
+    Changing a user's roles, or logging them out everywhere, makes every token they hold stale at once.
+    These endpoints block on the database, so they are only served by the servlet stack.
+ */
+
+@CrossOrigin(origins = "*")
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/admin")
+public class AdminController {
+    // Dependencies
+    @Autowired
+    UserImportService userImportService;
+
+    @Autowired
+    UserAccountService userAccountService;
+
+    // Endpoints
+    @PostMapping(value = "/users/import",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserImportReport> importUsers(InputStream body) throws IOException {
+        return ResponseEntity.ok(userImportService.importUsers(body));
+    }
+
+    // The body holds role names like a SignupRequest does, for example ["user", "mod"]
+    @PutMapping("/users/{id}/roles")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> changeRoles(@PathVariable long id, @RequestBody Set<String> roles) {
+        if (!userAccountService.changeRoles(id, roles)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new MessageResponse("Roles changed, the user must sign in again!"));
+    }
+
+    @PostMapping("/users/{id}/logout")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> logoutUser(@PathVariable long id) {
+        if (!userAccountService.invalidateTokens(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new MessageResponse("User logged out everywhere!"));
+    }
+}
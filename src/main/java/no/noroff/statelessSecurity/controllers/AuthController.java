@@ -1,30 +1,52 @@
 package no.noroff.statelessSecurity.controllers;
 
 import no.noroff.statelessSecurity.models.domain.Role;
-import no.noroff.statelessSecurity.models.domain.RoleType;
 import no.noroff.statelessSecurity.models.domain.User;
 import no.noroff.statelessSecurity.models.dto.*;
-import no.noroff.statelessSecurity.repositories.RoleRepository;
 import no.noroff.statelessSecurity.repositories.UserRepository;
+import no.noroff.statelessSecurity.securityUtil.jwt.AuthTokenFilter;
 import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
+import no.noroff.statelessSecurity.securityUtil.services.PasswordHashingExecutor;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsCache;
 import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+import no.noroff.statelessSecurity.services.RoleRegistry;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/*
+ Signing in and signing up both run BCrypt, which is slow on purpose.
+ That work runs on the PasswordHashingExecutor rather than on the request thread, and the endpoints answer
+ asynchronously once it is done. When the executor is full we answer 503 with a Retry-After header.
+ Both endpoints are timed from the moment the request arrives, so the time spent waiting for the executor
+ counts too, and the hashing itself is timed separately by the password encoder.
+ Logging out revokes the token the request was made with, it needs no hashing and answers straight away.
+ This controller belongs to the servlet stack, ReactiveAuthController answers the same requests with the
+ reactive profile.
+*/
+
 @CrossOrigin(origins = "*")
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/auth")
 public class AuthController {
     // Dependencies
@@ -37,23 +59,82 @@ public class AuthController {
     UserRepository userRepository;
 
     @Autowired
-    RoleRepository roleRepository;
+    RoleRegistry roleRegistry;
 
-    // From WebSecurityConfig
+    // From PasswordEncoderConfig
     @Autowired
     PasswordEncoder encoder;
 
     @Autowired
     JwtUtil jwtUtil;
 
+    @Autowired
+    UserDetailsCache userDetailsCache;
+
+    @Autowired
+    PasswordHashingExecutor hashingExecutor;
+
+    @Autowired
+    AuthMetrics authMetrics;
+
     // Endpoints
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+        return submit(AuthMetrics.Endpoint.SIGNIN, () -> signIn(loginRequest));
+    }
+
+    @PostMapping("/signup")
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
+        return submit(AuthMetrics.Endpoint.SIGNUP, () -> signUp(signUpRequest));
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<MessageResponse> logoutUser(HttpServletRequest request) {
+        String jwt = AuthTokenFilter.parseJwt(request);
+        if (jwt == null || !jwtUtil.revokeJwtToken(jwt)) {
+            // Tokens issued before we gave them ids cannot be revoked, they simply run out
+            return ResponseEntity
+                    .badRequest()
+                    .body(new MessageResponse("Error: This token cannot be revoked!"));
+        }
+        return ResponseEntity.ok(new MessageResponse("User logged out successfully!"));
+    }
+
+    /*
+     Hands the work to the hashing executor and records how long it took once it is done.
+     Wrong credentials and taken usernames count as failures, as does anything that throws.
+    */
+    private CompletableFuture<ResponseEntity<?>> submit(AuthMetrics.Endpoint endpoint, Supplier<ResponseEntity<?>> work) {
+        long start = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(work, hashingExecutor)
+                    .whenComplete((response, error) -> authMetrics.recordEndpoint(endpoint,
+                            error == null && response.getStatusCode().is2xxSuccessful(), start));
+        } catch (RejectedExecutionException e) {
+            authMetrics.recordRejected(endpoint);
+            throw e;
+        }
+    }
+
+    // The hashing executor is full, so we tell the client to come back later instead of queueing them
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<MessageResponse> hashingOverloaded() {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(hashingExecutor.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: Server is busy, please try again later."));
+    }
+
+    // Runs on the hashing executor
+    private ResponseEntity<?> signIn(LoginRequest loginRequest) {
         // Use loginRequest data to authenticate against our db with authentication manager.
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
-        // Set the authentication context to our logged in user
-        SecurityContextHolder.getContext().setAuthentication(authentication);
+        /*
+         We do not put the authentication in the SecurityContextHolder here, this is not the request thread
+         and the context would stay behind on the executor's thread. Our sessions are stateless, so
+         the token we hand out is all the client needs.
+        */
         // Generate a access Jwt for the user
         String jwt = jwtUtil.generateJwtToken(authentication);
 
@@ -71,64 +152,55 @@ public class AuthController {
                 roles));
     }
 
-    @PostMapping("/signup")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest){
-
-        // Checking if user exists with provided username
-        if (userRepository.existsByUsername(signUpRequest.getUsername())) {
-            return ResponseEntity
-                    .badRequest()
-                    .body(new MessageResponse("Error: Username is already taken!"));
-        }
-
-        // Checking if user exists with provided email
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
-            return ResponseEntity
-                    .badRequest()
-                    .body(new MessageResponse("Error: Email is already in use!"));
-        }
-
+    // Runs on the hashing executor
+    private ResponseEntity<?> signUp(SignupRequest signUpRequest) {
         // Create new user's account
         User user = new User(signUpRequest.getUsername(),
                 signUpRequest.getEmail(),
                 encoder.encode(signUpRequest.getPassword()));
 
-        // Setting roles
-        Set<String> strRoles = signUpRequest.getRole();
-        Set<Role> roles = new HashSet<>();
+        // Setting roles, users that do not ask for any roles are regular users
+        Set<Role> roles = roleRegistry.resolveAll(signUpRequest.getRole());
 
-        // Default set to user if no roles are provided
-        if (strRoles == null) {
-            Role userRole = roleRepository.findByName(RoleType.ROLE_USER)
-                    .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
-            roles.add(userRole);
-        } else {
-            // Switch to extract users roles from request
-            strRoles.forEach(role -> {
-                switch (role) {
-                    case "admin":
-                        Role adminRole = roleRepository.findByName(RoleType.ROLE_ADMIN)
-                                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
-                        roles.add(adminRole);
-
-                        break;
-                    case "mod":
-                        Role modRole = roleRepository.findByName(RoleType.ROLE_MODERATOR)
-                                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
-                        roles.add(modRole);
-
-                        break;
-                    default:
-                        Role userRole = roleRepository.findByName(RoleType.ROLE_USER)
-                                .orElseThrow(() -> new RuntimeException("Error: Role is not found."));
-                        roles.add(userRole);
-                }
-            });
-        }
         // Setting the roles and saving the user
         user.setRoles(roles);
-        userRepository.save(user);
+        /*
+         Instead of first asking the database whether the username or email is taken, we simply insert the user.
+         The unique constraints on users reject a duplicate, also when two people sign up with the same name at
+         the same time, and the constraint that was broken tells us which error to answer with.
+        */
+        try {
+            userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            return duplicateUser(e, signUpRequest);
+        }
+        // Make sure no stale copy of this username is served from the cache
+        userDetailsCache.evict(user.getUsername());
 
         return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
     }
+
+    private ResponseEntity<?> duplicateUser(DataIntegrityViolationException e, SignupRequest signUpRequest) {
+        String constraint = e.getCause() instanceof ConstraintViolationException
+                ? ((ConstraintViolationException) e.getCause()).getConstraintName()
+                : null;
+        boolean usernameTaken;
+        if (constraint != null && constraint.toLowerCase().contains(User.USERNAME_CONSTRAINT)) {
+            usernameTaken = true;
+        } else if (constraint != null && constraint.toLowerCase().contains(User.EMAIL_CONSTRAINT)) {
+            usernameTaken = false;
+        } else if (userRepository.existsByUsernameOnPrimary(signUpRequest.getUsername())) {
+            // The database did not name the constraint, so we look up which one it was
+            usernameTaken = true;
+        } else if (userRepository.existsByEmailOnPrimary(signUpRequest.getEmail())) {
+            usernameTaken = false;
+        } else {
+            throw e;
+        }
+        return ResponseEntity
+                .badRequest()
+                .body(new MessageResponse(usernameTaken
+                        ? "Error: Username is already taken!"
+                        : "Error: Email is already in use!"));
+    }
 }
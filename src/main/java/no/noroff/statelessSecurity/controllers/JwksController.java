@@ -0,0 +1,41 @@
+package no.noroff.statelessSecurity.controllers;
+
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtKeyManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+    This controller publishes the public keys our tokens are signed with, as a JSON Web Key Set.
+    Other services fetch it to verify our tokens themselves, picking the key by the kid in the token's header.
+    A new key is published a full rotation before we sign with it, so the key set may be cached for up to
+    half a rotation and verifiers still always know every key they will see.
+ */
+
+@CrossOrigin(origins = "*")
+@RestController
+public class JwksController {
+    // Dependencies
+    @Autowired
+    JwtKeyManager keyManager;
+
+    // Fields
+    @Value("${noroff.app.jwtKeyRotationMs}")
+    private long keyRotationMs;
+
+    // Endpoints
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, List<Map<String, Object>>>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(keyRotationMs / 2, TimeUnit.MILLISECONDS).cachePublic())
+                .body(Map.of("keys", keyManager.getJwks()));
+    }
+}
@@ -0,0 +1,230 @@
+package no.noroff.statelessSecurity.controllers;
+
+import io.r2dbc.spi.ConnectionFactory;
+import no.noroff.statelessSecurity.models.domain.Role;
+import no.noroff.statelessSecurity.models.domain.User;
+import no.noroff.statelessSecurity.models.domain.UserRow;
+import no.noroff.statelessSecurity.models.dto.*;
+import no.noroff.statelessSecurity.repositories.ReactiveUserRepository;
+import no.noroff.statelessSecurity.securityUtil.jwt.InvalidTokenLogger;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.jwt.ReactiveAuthTokenFilter;
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
+import no.noroff.statelessSecurity.securityUtil.services.PasswordHashingExecutor;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsCache;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+import no.noroff.statelessSecurity.services.RoleRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.validation.Valid;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/*
+ This is AuthController for the reactive profile, it answers the same requests with the same responses.
+ No thread waits here: users are read and written over R2DBC, and BCrypt runs on the password hashing
+ scheduler, which is bounded by PasswordHashingExecutor. When that is full we answer 503 with a Retry-After
+ header, just like the servlet stack.
+ A new user and their roles are inserted in one R2DBC transaction, and a duplicate username or email is
+ recognised by the unique constraint it broke.
+*/
+
+@CrossOrigin(origins = "*")
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/auth")
+public class ReactiveAuthController {
+    // Dependencies
+
+    // From ReactiveSecurityConfig
+    @Autowired
+    ReactiveAuthenticationManager authenticationManager;
+
+    @Autowired
+    ReactiveUserRepository userRepository;
+
+    @Autowired
+    RoleRegistry roleRegistry;
+
+    // From PasswordEncoderConfig
+    @Autowired
+    PasswordEncoder encoder;
+
+    @Autowired
+    JwtUtil jwtUtil;
+
+    @Autowired
+    UserDetailsCache userDetailsCache;
+
+    @Autowired
+    PasswordHashingExecutor hashingExecutor;
+
+    // From ReactiveSecurityConfig
+    @Autowired
+    Scheduler passwordHashingScheduler;
+
+    @Autowired
+    ConnectionFactory connectionFactory;
+
+    @Autowired
+    AuthMetrics authMetrics;
+
+    @Autowired
+    InvalidTokenLogger invalidTokenLogger;
+
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveAuthController.class);
+
+    private TransactionalOperator transactionalOperator;
+
+    @PostConstruct
+    public void init() {
+        transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+
+    // Endpoints
+    @PostMapping("/signin")
+    public Mono<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+        return timed(AuthMetrics.Endpoint.SIGNIN, authenticationManager
+                .authenticate(new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()))
+                // The password was checked on the hashing scheduler, so the token is signed there as well
+                .map(this::signedIn));
+    }
+
+    @PostMapping("/signup")
+    public Mono<ResponseEntity<?>> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
+        return timed(AuthMetrics.Endpoint.SIGNUP, Mono
+                .fromCallable(() -> encoder.encode(signUpRequest.getPassword()))
+                .subscribeOn(passwordHashingScheduler)
+                .flatMap(password -> insert(signUpRequest, password))
+                .<ResponseEntity<?>>map(user -> {
+                    // Make sure no stale copy of this username is served from the cache
+                    userDetailsCache.evict(user.getUsername());
+                    return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+                })
+                .onErrorResume(DataIntegrityViolationException.class, e -> duplicateUser(e, signUpRequest)));
+    }
+
+    // Revoking may write to the revocations file, so it is kept off the event loop
+    @PostMapping("/logout")
+    public Mono<ResponseEntity<MessageResponse>> logoutUser(ServerHttpRequest request) {
+        String jwt = ReactiveAuthTokenFilter.parseJwt(request);
+        return Mono.fromCallable(() -> {
+            if (jwt == null || !jwtUtil.revokeJwtToken(jwt)) {
+                return ResponseEntity
+                        .badRequest()
+                        .body(new MessageResponse("Error: This token cannot be revoked!"));
+            }
+            return ResponseEntity.ok(new MessageResponse("User logged out successfully!"));
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /*
+     Records how long the request took once it is answered, from the moment it was subscribed to.
+     Wrong credentials and taken usernames count as failures, and a full hashing scheduler counts as rejected.
+    */
+    private Mono<ResponseEntity<?>> timed(AuthMetrics.Endpoint endpoint, Mono<ResponseEntity<?>> work) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return work
+                    .doOnSuccess(response -> authMetrics.recordEndpoint(endpoint,
+                            response != null && response.getStatusCode().is2xxSuccessful(), start))
+                    .doOnError(error -> {
+                        if (error instanceof RejectedExecutionException) {
+                            authMetrics.recordRejected(endpoint);
+                        } else {
+                            authMetrics.recordEndpoint(endpoint, false, start);
+                        }
+                    });
+        });
+    }
+
+    // The hashing scheduler is full, so we tell the client to come back later instead of queueing them
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<MessageResponse> hashingOverloaded() {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(hashingExecutor.getRetryAfterSeconds()))
+                .body(new MessageResponse("Error: Server is busy, please try again later."));
+    }
+
+    /*
+     Wrong credentials. On the servlet stack the exception reaches AuthEntryPointJwt, here nothing outside the
+     controller translates it, so we answer with the same 401.
+    */
+    @ExceptionHandler(AuthenticationException.class)
+    public ResponseEntity<MessageResponse> authenticationFailed(AuthenticationException e) {
+        invalidTokenLogger.warn(logger, "Unauthorized error: {}", e.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.UNAUTHORIZED)
+                .body(new MessageResponse("Error: Unauthorized"));
+    }
+
+    private ResponseEntity<?> signedIn(Authentication authentication) {
+        String jwt = jwtUtil.generateJwtToken(authentication);
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+        List<String> roles = userDetails.getAuthorities().stream()
+                .map(item -> item.getAuthority())
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(new JwtResponse(jwt,
+                userDetails.getId(),
+                userDetails.getUsername(),
+                userDetails.getEmail(),
+                roles));
+    }
+
+    // Inserts the user and then their roles, users that do not ask for any roles are regular users
+    private Mono<UserRow> insert(SignupRequest signUpRequest, String password) {
+        Set<Role> roles = roleRegistry.resolveAll(signUpRequest.getRole());
+        return userRepository.save(new UserRow(signUpRequest.getUsername(), signUpRequest.getEmail(), password))
+                .flatMap(user -> Flux.fromIterable(roles)
+                        .concatMap(role -> userRepository.addRole(user.getId(), role.getId()))
+                        .then(Mono.just(user)))
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<ResponseEntity<?>> duplicateUser(DataIntegrityViolationException e, SignupRequest signUpRequest) {
+        String message = e.getMessage() == null ? "" : e.getMessage().toLowerCase();
+        Mono<Boolean> usernameTaken;
+        if (message.contains(User.USERNAME_CONSTRAINT)) {
+            usernameTaken = Mono.just(true);
+        } else if (message.contains(User.EMAIL_CONSTRAINT)) {
+            usernameTaken = Mono.just(false);
+        } else {
+            // The database did not name the constraint, so we look up which one it was
+            usernameTaken = userRepository.existsByUsername(signUpRequest.getUsername())
+                    .flatMap(taken -> taken
+                            ? Mono.just(true)
+                            : userRepository.existsByEmail(signUpRequest.getEmail())
+                                    .flatMap(emailTaken -> emailTaken ? Mono.just(false) : Mono.error(e)));
+        }
+        return usernameTaken.map(taken -> ResponseEntity
+                .badRequest()
+                .body(new MessageResponse(taken
+                        ? "Error: Username is already taken!"
+                        : "Error: Email is already in use!")));
+    }
+}
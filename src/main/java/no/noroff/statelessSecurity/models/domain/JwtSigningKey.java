@@ -0,0 +1,81 @@
+package no.noroff.statelessSecurity.models.domain;
+
+import javax.persistence.*;
+
+/*
+    This class is responsible for creating the jwt_keys table, which holds the key pairs we sign tokens with
+    when noroff.app.jwtAlgorithm is RS256 or ES256. Every instance reads its keys from here, so they all sign
+    and verify with the same keys, also after a restart.
+
+    Time is divided into slots of one key rotation each, and every slot has exactly one key per algorithm.
+    The unique constraint makes sure of that when two instances create the key for a slot at the same time.
+    The private key is encrypted, see JwtKeyManager, the public key is stored as it is published.
+ */
+
+@Entity
+@Table(name = "jwt_keys", uniqueConstraints = {
+        @UniqueConstraint(name = JwtSigningKey.SLOT_CONSTRAINT, columnNames = {"algorithm", "slot"})
+})
+public class JwtSigningKey {
+    public static final String SLOT_CONSTRAINT = "uk_jwt_keys_slot";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // RS256 or ES256
+    @Column(length = 5, nullable = false)
+    private String algorithm;
+
+    // The rotation this key signs in, counted in rotations since the epoch
+    @Column(nullable = false)
+    private long slot;
+
+    @Column(length = 16, nullable = false)
+    private String kid;
+
+    // PKCS #8, encrypted
+    @Column(name = "private_key", length = 4096, nullable = false)
+    private byte[] privateKey;
+
+    // X.509 SubjectPublicKeyInfo
+    @Column(name = "public_key", length = 1024, nullable = false)
+    private byte[] publicKey;
+
+    // Constructors
+    public JwtSigningKey() {
+    }
+
+    public JwtSigningKey(String algorithm, long slot, String kid, byte[] privateKey, byte[] publicKey) {
+        this.algorithm = algorithm;
+        this.slot = slot;
+        this.kid = kid;
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public long getSlot() {
+        return slot;
+    }
+
+    public String getKid() {
+        return kid;
+    }
+
+    public byte[] getPrivateKey() {
+        return privateKey;
+    }
+
+    public byte[] getPublicKey() {
+        return publicKey;
+    }
+}
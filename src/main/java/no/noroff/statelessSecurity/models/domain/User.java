@@ -12,15 +12,22 @@ import java.util.Set;
 
     We also want username and email to be unique in our database, we could programmatically cater for this
     in our application, we do, but we also enforce it in the database with the @UniqueConstraint annotation.
+    The constraints are named so signing up can tell which of them a duplicate user broke.
+
+    The token epoch is written into every token we issue for the user. Raising it, for example when their roles
+    change, makes every token issued before that stale at once. Existing rows get 0 from the column default.
  */
 
 
 @Entity
 @Table(name = "users", uniqueConstraints = {
-        @UniqueConstraint(columnNames = "username"),
-        @UniqueConstraint(columnNames = "email")
+        @UniqueConstraint(name = User.USERNAME_CONSTRAINT, columnNames = "username"),
+        @UniqueConstraint(name = User.EMAIL_CONSTRAINT, columnNames = "email")
 })
 public class User {
+    public static final String USERNAME_CONSTRAINT = "uk_users_username";
+    public static final String EMAIL_CONSTRAINT = "uk_users_email";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -48,6 +55,9 @@ public class User {
             inverseJoinColumns = @JoinColumn(name = "role_id"))
     private Set<Role> roles;
 
+    @Column(name = "token_epoch", nullable = false, columnDefinition = "integer default 0 not null")
+    private int tokenEpoch;
+
     // Constructors
 
     public User() {
@@ -99,4 +109,12 @@ public class User {
     public void setRoles(Set<Role> roles) {
         this.roles = roles;
     }
+
+    public int getTokenEpoch() {
+        return tokenEpoch;
+    }
+
+    public void setTokenEpoch(int tokenEpoch) {
+        this.tokenEpoch = tokenEpoch;
+    }
 }
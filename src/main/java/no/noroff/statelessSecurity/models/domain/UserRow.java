@@ -0,0 +1,77 @@
+package no.noroff.statelessSecurity.models.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+/*
+    This class is a row of the users table as the reactive stack reads and writes it over R2DBC.
+    R2DBC has no relationships, so unlike User it has no roles, those are inserted into user_roles separately.
+    The table itself is still created and maintained through User.
+ */
+
+@Table("users")
+public class UserRow {
+    @Id
+    private Long id;
+
+    private String username;
+
+    private String email;
+
+    private String password;
+
+    @Column("token_epoch")
+    private int tokenEpoch;
+
+    // Constructors
+    public UserRow() {
+    }
+
+    public UserRow(String username, String email, String password) {
+        this.username = username;
+        this.email = email;
+        this.password = password;
+    }
+
+    // Getters and setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public int getTokenEpoch() {
+        return tokenEpoch;
+    }
+
+    public void setTokenEpoch(int tokenEpoch) {
+        this.tokenEpoch = tokenEpoch;
+    }
+}
@@ -0,0 +1,53 @@
+package no.noroff.statelessSecurity.models.dto;
+
+import no.noroff.statelessSecurity.models.domain.RoleType;
+
+/*
+ DTO for reading a user and their roles in a single query when authenticating.
+ The query returns one row per role, each carrying the user's fields, and no managed entities.
+ The role is null for a user without any roles.
+*/
+
+public class UserAuthRow {
+    private final Long id;
+    private final String username;
+    private final String email;
+    private final String password;
+    private final int tokenEpoch;
+    private final RoleType role;
+
+    // Constructors
+    public UserAuthRow(Long id, String username, String email, String password, int tokenEpoch, RoleType role) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.password = password;
+        this.tokenEpoch = tokenEpoch;
+        this.role = role;
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public int getTokenEpoch() {
+        return tokenEpoch;
+    }
+
+    public RoleType getRole() {
+        return role;
+    }
+}
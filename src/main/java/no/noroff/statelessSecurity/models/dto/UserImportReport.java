@@ -0,0 +1,55 @@
+package no.noroff.statelessSecurity.models.dto;
+
+import java.util.List;
+
+// DTO for the response of a bulk user import, with a result for every record we read
+
+public class UserImportReport {
+    private final int total;
+    private final int imported;
+    private final int failed;
+    private final long elapsedMs;
+    private final double rowsPerSecond;
+    private final List<UserImportResult> results;
+
+    // Constructors
+    public UserImportReport(List<UserImportResult> results, long elapsedMs) {
+        int imported = 0;
+        for (UserImportResult result : results) {
+            if (result.isImported()) {
+                imported++;
+            }
+        }
+        this.total = results.size();
+        this.imported = imported;
+        this.failed = total - imported;
+        this.elapsedMs = elapsedMs;
+        this.rowsPerSecond = elapsedMs > 0 ? imported * 1000.0 / elapsedMs : imported;
+        this.results = results;
+    }
+
+    // Getters
+    public int getTotal() {
+        return total;
+    }
+
+    public int getImported() {
+        return imported;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public List<UserImportResult> getResults() {
+        return results;
+    }
+}
@@ -0,0 +1,35 @@
+package no.noroff.statelessSecurity.models.dto;
+
+// DTO for the outcome of importing one user, the index is the record's position in the import
+
+public class UserImportResult {
+    private final int index;
+    private final String username;
+    private final boolean imported;
+    private final String message;
+
+    // Constructors
+    public UserImportResult(int index, String username, boolean imported, String message) {
+        this.index = index;
+        this.username = username;
+        this.imported = imported;
+        this.message = message;
+    }
+
+    // Getters
+    public int getIndex() {
+        return index;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean isImported() {
+        return imported;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,25 @@
+package no.noroff.statelessSecurity.repositories;
+
+import no.noroff.statelessSecurity.models.domain.JwtSigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.List;
+
+/*
+ This is our JwtSigningKeyRepository, it is responsible for managing the domain entity JwtSigningKey.
+ We need the keys of one algorithm, and a way to remove the keys no unexpired token can be signed with.
+*/
+
+@Repository
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, Long> {
+    List<JwtSigningKey> findByAlgorithmOrderBySlot(String algorithm);
+
+    @Modifying
+    @Transactional
+    @Query("delete from JwtSigningKey k where k.algorithm = :algorithm and k.slot < :slot")
+    int deleteByAlgorithmAndSlotBefore(@Param("algorithm") String algorithm, @Param("slot") long slot);
+}
@@ -0,0 +1,37 @@
+package no.noroff.statelessSecurity.repositories;
+
+import no.noroff.statelessSecurity.models.domain.UserRow;
+import no.noroff.statelessSecurity.models.dto.UserAuthRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+ This is the UserRepository of the reactive stack, it reads and writes the users table over R2DBC.
+ It has the same methods as UserRepository, written in SQL since there is no JPQL here, and returns
+ publishers instead of values so no thread waits for the database.
+ Roles are not entities here, so a new user's roles are added with addRole. Roles themselves never change
+ while the application runs and are read from RoleRegistry, which is why there is no reactive RoleRepository.
+*/
+
+@Repository
+public interface ReactiveUserRepository extends R2dbcRepository<UserRow, Long> {
+    Mono<Boolean> existsByUsername(String username);
+    Mono<Boolean> existsByEmail(String email);
+
+    @Query("select u.id, u.username, u.email, u.password, u.token_epoch, r.name as role from users u " +
+            "left join user_roles ur on ur.user_id = u.id left join roles r on r.id = ur.role_id " +
+            "where u.username = :username")
+    Flux<UserAuthRow> findAuthRowsByUsername(String username);
+
+    @Modifying
+    @Query("update users set password = :password where username = :username")
+    Mono<Integer> updatePassword(String username, String password);
+
+    @Modifying
+    @Query("insert into user_roles (user_id, role_id) values (:userId, :roleId)")
+    Mono<Integer> addRole(Long userId, Integer roleId);
+}
@@ -1,20 +1,48 @@
 package no.noroff.statelessSecurity.repositories;
 
 import no.noroff.statelessSecurity.models.domain.User;
+import no.noroff.statelessSecurity.models.dto.UserAuthRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.List;
 import java.util.Optional;
 
 /*
  This is our UserRepository, it is responsible for manipulating the domain entity User.
  In addition to the default functionality, we need extra methods for our unique business logic.
  We need a way to find a user by their username, to see if a user exists for a given username, and
- to see if a user exists for a given email.
+ to see if a user exists for a given email, from a read replica or from the primary.
+ For authentication we also need a way to read a user together with their role names in one query,
+ without loading any entities, and a way to replace a user's password hash when it is upgraded.
 */
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
+    // Read-only, so they can be answered by a read replica
+    @Transactional(readOnly = true)
     Boolean existsByUsername(String username);
+    @Transactional(readOnly = true)
     Boolean existsByEmail(String email);
+
+    // Read-write, so they are answered by the primary, for when an insert there just failed on a duplicate
+    // and a lagging replica may not have the conflicting user yet
+    @Transactional
+    @Query("select case when count(u) > 0 then true else false end from User u where u.username = :username")
+    boolean existsByUsernameOnPrimary(@Param("username") String username);
+    @Transactional
+    @Query("select case when count(u) > 0 then true else false end from User u where u.email = :email")
+    boolean existsByEmailOnPrimary(@Param("email") String email);
+
+    @Query("select new no.noroff.statelessSecurity.models.dto.UserAuthRow(u.id, u.username, u.email, u.password, u.tokenEpoch, r.name) " +
+            "from User u left join u.roles r where u.username = :username")
+    List<UserAuthRow> findAuthRowsByUsername(@Param("username") String username);
+
+    @Modifying
+    @Query("update User u set u.password = :password where u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
 }
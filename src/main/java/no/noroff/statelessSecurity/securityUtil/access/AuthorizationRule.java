@@ -0,0 +1,55 @@
+package no.noroff.statelessSecurity.securityUtil.access;
+
+/*
+ The role requirement of one endpoint, compiled by AuthorizationRuleCompiler.
+ A user is let through when they have any of the roles in the mask, or when the rule lets everyone, or
+ everyone who is signed in, through. Which is what the annotations on our endpoints come down to.
+*/
+
+public final class AuthorizationRule {
+    // Fields
+    static final AuthorizationRule PERMIT_ALL = new AuthorizationRule(RoleMask.NONE, true, true);
+    static final AuthorizationRule AUTHENTICATED = new AuthorizationRule(RoleMask.NONE, false, true);
+
+    private final int roleMask;
+    private final boolean permitAll;
+    private final boolean permitAuthenticated;
+
+    // Constructors
+    private AuthorizationRule(int roleMask, boolean permitAll, boolean permitAuthenticated) {
+        this.roleMask = roleMask;
+        this.permitAll = permitAll;
+        this.permitAuthenticated = permitAuthenticated;
+    }
+
+    static AuthorizationRule anyRole(int roleMask) {
+        return new AuthorizationRule(roleMask, false, false);
+    }
+
+    // A user passing either rule passes the result, several annotations on a method are combined this way
+    AuthorizationRule or(AuthorizationRule other) {
+        return new AuthorizationRule(roleMask | other.roleMask,
+                permitAll || other.permitAll, permitAuthenticated || other.permitAuthenticated);
+    }
+
+    public boolean permits(int userRoleMask, boolean authenticated) {
+        return permitAll
+                || (userRoleMask & roleMask) != 0
+                || (permitAuthenticated && authenticated);
+    }
+
+    public int getRoleMask() {
+        return roleMask;
+    }
+
+    @Override
+    public String toString() {
+        if (permitAll) {
+            return "permitAll";
+        }
+        if (permitAuthenticated) {
+            return "authenticated";
+        }
+        return "anyRole(" + Integer.toBinaryString(roleMask) + ")";
+    }
+}
@@ -0,0 +1,121 @@
+package no.noroff.statelessSecurity.securityUtil.access;
+
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.annotation.Jsr250SecurityConfig;
+import org.springframework.security.access.prepost.PostInvocationAttribute;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.access.prepost.PreFilter;
+import org.springframework.security.access.prepost.PreInvocationAttribute;
+import org.springframework.util.ClassUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ Turns the security annotations of a method into an AuthorizationRule.
+ It understands @RolesAllowed and the @PreAuthorize expressions we write, which are role checks joined by or:
+ hasRole, hasAnyRole, hasAuthority, hasAnyAuthority, permitAll and isAuthenticated(). Anything else, like
+ and, not, method arguments, bean references or the post-invocation annotations, cannot be compiled. compile
+ then throws an IllegalArgumentException saying why, and the method is left to Spring's SpEL evaluation.
+*/
+
+public final class AuthorizationRuleCompiler {
+    // Fields
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private static final Pattern OR = Pattern.compile("\\s+or\\s+");
+    private static final Pattern CALL = Pattern.compile(
+            "(hasRole|hasAnyRole|hasAuthority|hasAnyAuthority)\\(\\s*('[^']*'(?:\\s*,\\s*'[^']*')*)\\s*\\)");
+    private static final Pattern QUOTED = Pattern.compile("'([^']*)'");
+
+    // Constructors
+    private AuthorizationRuleCompiler() {
+    }
+
+    // The attributes are the ones Spring's method security metadata source found for the method
+    public static AuthorizationRule compile(Method method, Class<?> targetClass, Collection<ConfigAttribute> attributes) {
+        if (attributes == null || attributes.isEmpty()) {
+            throw new IllegalArgumentException("no security attributes");
+        }
+        AuthorizationRule rule = null;
+        for (ConfigAttribute attribute : attributes) {
+            AuthorizationRule compiled = compile(method, targetClass, attribute);
+            rule = rule == null ? compiled : rule.or(compiled);
+        }
+        return rule;
+    }
+
+    private static AuthorizationRule compile(Method method, Class<?> targetClass, ConfigAttribute attribute) {
+        if (attribute instanceof PostInvocationAttribute) {
+            throw new IllegalArgumentException("checks after the invocation");
+        }
+        if (attribute instanceof PreInvocationAttribute) {
+            // Spring does not expose the expression of the attribute, so we read it from the annotation as it does
+            Method specificMethod = ClassUtils.getMostSpecificMethod(method, targetClass);
+            if (findAnnotation(specificMethod, PreFilter.class) != null) {
+                throw new IllegalArgumentException("@PreFilter");
+            }
+            PreAuthorize preAuthorize = findAnnotation(specificMethod, PreAuthorize.class);
+            if (preAuthorize == null) {
+                throw new IllegalArgumentException("no @PreAuthorize expression");
+            }
+            return compileExpression(preAuthorize.value());
+        }
+        if (attribute instanceof Jsr250SecurityConfig) {
+            if (Jsr250SecurityConfig.PERMIT_ALL_ATTRIBUTE.equals(attribute)) {
+                return AuthorizationRule.PERMIT_ALL;
+            }
+            return AuthorizationRule.anyRole(roleBit(attribute.getAttribute()));
+        }
+        throw new IllegalArgumentException("unsupported attribute " + attribute);
+    }
+
+    public static AuthorizationRule compileExpression(String expression) {
+        AuthorizationRule rule = null;
+        for (String term : OR.split(expression.trim())) {
+            AuthorizationRule compiled = compileTerm(term.trim(), expression);
+            rule = rule == null ? compiled : rule.or(compiled);
+        }
+        return rule;
+    }
+
+    private static AuthorizationRule compileTerm(String term, String expression) {
+        if (term.equals("permitAll")) {
+            return AuthorizationRule.PERMIT_ALL;
+        }
+        if (term.equals("isAuthenticated()")) {
+            return AuthorizationRule.AUTHENTICATED;
+        }
+        Matcher call = CALL.matcher(term);
+        if (!call.matches()) {
+            throw new IllegalArgumentException("expression " + expression);
+        }
+        // hasRole and hasAnyRole add the ROLE_ prefix unless it is there already, the authority checks never do
+        boolean addPrefix = call.group(1).endsWith("Role");
+        int mask = RoleMask.NONE;
+        Matcher quoted = QUOTED.matcher(call.group(2));
+        while (quoted.find()) {
+            String name = quoted.group(1);
+            mask |= roleBit(addPrefix && !name.startsWith(ROLE_PREFIX) ? ROLE_PREFIX + name : name);
+        }
+        return AuthorizationRule.anyRole(mask);
+    }
+
+    // A role that is not a RoleType has no bit, so it could never be granted by the mask
+    private static int roleBit(String authority) {
+        if (!RoleMask.isRole(authority)) {
+            throw new IllegalArgumentException("unknown role " + authority);
+        }
+        return RoleMask.of(authority);
+    }
+
+    // On the method first, then on its class
+    private static <A extends Annotation> A findAnnotation(Method method, Class<A> type) {
+        A annotation = AnnotationUtils.findAnnotation(method, type);
+        return annotation != null ? annotation : AnnotationUtils.findAnnotation(method.getDeclaringClass(), type);
+    }
+}
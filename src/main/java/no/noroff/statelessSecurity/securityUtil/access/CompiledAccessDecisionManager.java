@@ -0,0 +1,114 @@
+package no.noroff.statelessSecurity.securityUtil.access;
+
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.method.MethodSecurityMetadataSource;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.core.Authentication;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ This class decides whether a user may call a secured endpoint without evaluating any SpEL.
+ At startup compile turns the security annotations of every endpoint into an AuthorizationRule, a mask of
+ the roles that are let in. A user's roles are a mask as well, which UserDetailsImpl works out once when it
+ is built, so the decision is an AND and a compare.
+ Endpoints whose annotations cannot be compiled, and methods that are not endpoints, are decided by the
+ voters Spring would normally use, which we are given as the delegate. The endpoints that fell back are
+ logged at startup.
+*/
+
+public class CompiledAccessDecisionManager implements AccessDecisionManager {
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(CompiledAccessDecisionManager.class);
+
+    private final AccessDecisionManager delegate;
+
+    private final AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
+
+    // Replaced once by compile, every call before that goes to the delegate
+    private volatile Map<Method, AuthorizationRule> rules = Map.of();
+
+    // Constructors
+    public CompiledAccessDecisionManager(AccessDecisionManager delegate) {
+        this.delegate = delegate;
+    }
+
+    // Compiles the rules of the given methods, mapped to the class they are called on
+    public void compile(Map<Method, Class<?>> endpoints, MethodSecurityMetadataSource metadataSource) {
+        Map<Method, AuthorizationRule> compiled = new HashMap<>();
+        List<String> fallbacks = new ArrayList<>();
+        for (Map.Entry<Method, Class<?>> endpoint : endpoints.entrySet()) {
+            Method method = endpoint.getKey();
+            Collection<ConfigAttribute> attributes = metadataSource.getAttributes(method, endpoint.getValue());
+            // Endpoints without annotations are never passed to an AccessDecisionManager
+            if (attributes == null || attributes.isEmpty()) {
+                continue;
+            }
+            try {
+                compiled.put(method, AuthorizationRuleCompiler.compile(method, endpoint.getValue(), attributes));
+            } catch (IllegalArgumentException e) {
+                String name = endpoint.getValue().getSimpleName() + "." + method.getName();
+                logger.warn("Authorization of {} is evaluated with SpEL, it cannot be compiled: {}", name, e.getMessage());
+                fallbacks.add(name);
+            }
+        }
+        rules = Map.copyOf(compiled);
+        logger.info("Compiled authorization rules for {} endpoints, {} use SpEL {}",
+                compiled.size(), fallbacks.size(), fallbacks);
+    }
+
+    // Overrides
+    @Override
+    public void decide(Authentication authentication, Object object, Collection<ConfigAttribute> configAttributes) {
+        AuthorizationRule rule = object instanceof MethodInvocation
+                ? rules.get(((MethodInvocation) object).getMethod())
+                : null;
+        if (rule == null) {
+            delegate.decide(authentication, object, configAttributes);
+            return;
+        }
+        if (authentication == null) {
+            throw new InsufficientAuthenticationException("An Authentication object was not found in the SecurityContext");
+        }
+        boolean authenticated = authentication.isAuthenticated() && !trustResolver.isAnonymous(authentication);
+        if (!rule.permits(roleMask(authentication), authenticated)) {
+            throw new AccessDeniedException("Access is denied");
+        }
+    }
+
+    @Override
+    public boolean supports(ConfigAttribute attribute) {
+        return delegate.supports(attribute);
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return delegate.supports(clazz);
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    // Our own users carry their mask, anyone else has it worked out from their authorities
+    private static int roleMask(Authentication authentication) {
+        Object principal = authentication.getPrincipal();
+        if (principal instanceof UserDetailsImpl) {
+            return ((UserDetailsImpl) principal).getRoleMask();
+        }
+        return RoleMask.of(authentication.getAuthorities());
+    }
+}
@@ -0,0 +1,46 @@
+package no.noroff.statelessSecurity.securityUtil.access;
+
+import no.noroff.statelessSecurity.models.domain.RoleType;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ One GrantedAuthority per RoleType, shared by every user with that role.
+ SimpleGrantedAuthority never changes, so there is no reason to make a new one each time a user is loaded
+ from the database or rebuilt from a token.
+*/
+
+public final class RoleAuthorities {
+    // Fields
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private static final GrantedAuthority[] BY_ROLE = new GrantedAuthority[RoleType.values().length];
+
+    // By the name without ROLE_, which is how tokens carry them
+    private static final Map<String, GrantedAuthority> BY_CLAIM = new HashMap<>();
+
+    static {
+        for (RoleType role : RoleType.values()) {
+            GrantedAuthority authority = new SimpleGrantedAuthority(role.name());
+            BY_ROLE[role.ordinal()] = authority;
+            BY_CLAIM.put(role.name().substring(ROLE_PREFIX.length()), authority);
+        }
+    }
+
+    // Constructors
+    private RoleAuthorities() {
+    }
+
+    public static GrantedAuthority of(RoleType role) {
+        return BY_ROLE[role.ordinal()];
+    }
+
+    // A role from the roles claim of a token, a role we do not know gets an authority of its own
+    public static GrantedAuthority ofClaim(String role) {
+        GrantedAuthority authority = BY_CLAIM.get(role);
+        return authority != null ? authority : new SimpleGrantedAuthority(ROLE_PREFIX + role);
+    }
+}
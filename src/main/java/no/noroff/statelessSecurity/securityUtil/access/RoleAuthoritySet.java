@@ -0,0 +1,130 @@
+package no.noroff.statelessSecurity.securityUtil.access;
+
+import no.noroff.statelessSecurity.models.domain.RoleType;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/*
+ The authorities of a user, as Spring Security sees them, kept as a RoleMask.
+ RoleType is a closed set, so a user's roles fit in the bits of one int. Iterating hands out the shared
+ authorities from RoleAuthorities, and asking whether the user has a role is a bit test instead of
+ comparing the names of every authority.
+ An authority that is not one of our roles, which could only come from a token issued with a role we no
+ longer have, is kept as it is next to the mask.
+ The collection cannot be changed, UserDetailsImpl shares it between requests.
+*/
+
+public final class RoleAuthoritySet extends AbstractCollection<GrantedAuthority> implements Serializable {
+    // Fields
+    private static final long serialVersionUID = 1L;
+
+    private static final RoleType[] ROLES = RoleType.values();
+
+    private final int mask;
+
+    private final List<GrantedAuthority> others;
+
+    // Constructors
+    private RoleAuthoritySet(int mask, List<GrantedAuthority> others) {
+        this.mask = mask;
+        this.others = others;
+    }
+
+    public static RoleAuthoritySet of(int mask) {
+        return new RoleAuthoritySet(mask, List.of());
+    }
+
+    public static RoleAuthoritySet of(Collection<? extends GrantedAuthority> authorities) {
+        if (authorities instanceof RoleAuthoritySet) {
+            return (RoleAuthoritySet) authorities;
+        }
+        int mask = RoleMask.NONE;
+        List<GrantedAuthority> others = null;
+        for (GrantedAuthority authority : authorities) {
+            int bit = RoleMask.of(authority.getAuthority());
+            if (bit != RoleMask.NONE) {
+                mask |= bit;
+            } else {
+                if (others == null) {
+                    others = new ArrayList<>();
+                }
+                others.add(authority);
+            }
+        }
+        return new RoleAuthoritySet(mask, others == null ? List.of() : List.copyOf(others));
+    }
+
+    public boolean hasRole(RoleType role) {
+        return (mask & RoleMask.of(role)) != 0;
+    }
+
+    public int getMask() {
+        return mask;
+    }
+
+    // A copy, changing it does not change the user
+    public EnumSet<RoleType> getRoles() {
+        EnumSet<RoleType> roles = EnumSet.noneOf(RoleType.class);
+        for (RoleType role : ROLES) {
+            if (hasRole(role)) {
+                roles.add(role);
+            }
+        }
+        return roles;
+    }
+
+    // Overrides
+    @Override
+    public int size() {
+        return Integer.bitCount(mask) + others.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mask == RoleMask.NONE && others.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof GrantedAuthority)) {
+            return false;
+        }
+        int bit = RoleMask.of(((GrantedAuthority) o).getAuthority());
+        return bit != RoleMask.NONE ? (mask & bit) != 0 : others.contains(o);
+    }
+
+    // Our roles in the order of RoleType, then any others
+    @Override
+    public Iterator<GrantedAuthority> iterator() {
+        return new Iterator<>() {
+            private int remaining = mask;
+            private int other;
+
+            @Override
+            public boolean hasNext() {
+                return remaining != 0 || other < others.size();
+            }
+
+            @Override
+            public GrantedAuthority next() {
+                if (remaining != 0) {
+                    int ordinal = Integer.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    return RoleAuthorities.of(ROLES[ordinal]);
+                }
+                if (other < others.size()) {
+                    return others.get(other++);
+                }
+                throw new NoSuchElementException();
+            }
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package no.noroff.statelessSecurity.securityUtil.access;
+
+import no.noroff.statelessSecurity.models.domain.RoleType;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ A set of roles as the bits of an int, one bit per RoleType. Checking whether a user has one of a number of
+ roles is then a single AND instead of comparing authority names.
+ Authorities that are not a RoleType, like Spring's ROLE_ANONYMOUS, have no bit.
+*/
+
+public final class RoleMask {
+    // Fields
+    public static final int NONE = 0;
+
+    private static final Map<String, Integer> BITS = new HashMap<>();
+
+    static {
+        for (RoleType role : RoleType.values()) {
+            BITS.put(role.name(), of(role));
+        }
+    }
+
+    // Constructors
+    private RoleMask() {
+    }
+
+    public static int of(RoleType role) {
+        return 1 << role.ordinal();
+    }
+
+    // The bit of an authority name such as ROLE_ADMIN, or NONE when it is not one of our roles
+    public static int of(String authority) {
+        Integer bit = BITS.get(authority);
+        return bit == null ? NONE : bit;
+    }
+
+    public static int of(Collection<? extends GrantedAuthority> authorities) {
+        if (authorities instanceof RoleAuthoritySet) {
+            return ((RoleAuthoritySet) authorities).getMask();
+        }
+        int mask = NONE;
+        for (GrantedAuthority authority : authorities) {
+            mask |= of(authority.getAuthority());
+        }
+        return mask;
+    }
+
+    public static boolean isRole(String authority) {
+        return BITS.containsKey(authority);
+    }
+}
@@ -0,0 +1,171 @@
+package no.noroff.statelessSecurity.securityUtil.access;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.access.ConfigAttribute;
+import org.springframework.security.access.method.MethodSecurityMetadataSource;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.FilterInvocation;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.FilterInvocationSecurityMetadataSource;
+import org.springframework.security.web.access.intercept.FilterSecurityInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping;
+
+import javax.servlet.Filter;
+import javax.servlet.http.HttpServletRequest;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+ This class knows, for every path we serve, who may request it. It is built once the application has started,
+ from every mapped endpoint, the rules in WebSecurityConfig and the role annotations on the endpoints.
+    - PUBLIC routes are permitAll in WebSecurityConfig and have no role annotation.
+    - AUTHENTICATED routes need a signed in user.
+    - ROLE_GATED routes need a role, either in WebSecurityConfig or through an annotation on the endpoint.
+ The paths are kept in a hash map, so a lookup costs the same however many routes there are. Paths with
+ variables or wildcards are not in it, a path we do not know is never treated as public.
+ AuthTokenFilter uses this to leave the token of a request to a public route alone.
+*/
+
+@Component
+public class RouteTable {
+    // The kinds of route, from least to most restricted
+    public enum Access {
+        PUBLIC,
+        AUTHENTICATED,
+        ROLE_GATED
+    }
+
+    // Dependencies
+    @Autowired
+    private ApplicationContext context;
+
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(RouteTable.class);
+
+    private static final String PERMIT_ALL = "permitAll";
+    private static final String METHOD_RULES = "methodSecurityMetadataSource";
+
+    // Replaced once the application has started, until then no route is known
+    private volatile Map<String, Access> routes = Map.of();
+
+    @EventListener
+    public void build(ContextRefreshedEvent event) {
+        if (event.getApplicationContext() != context) {
+            return;
+        }
+        FilterInvocationSecurityMetadataSource webRules = webSecurityMetadataSource();
+        // Without the servlet security filters, as with the reactive profile, there is nothing to classify
+        if (webRules == null) {
+            return;
+        }
+        // The source that combines the @PreAuthorize and @RolesAllowed sources, see MethodSecurityConfig
+        MethodSecurityMetadataSource methodRules = context.containsBean(METHOD_RULES)
+                ? context.getBean(METHOD_RULES, MethodSecurityMetadataSource.class)
+                : null;
+
+        Map<String, Access> built = new HashMap<>();
+        for (RequestMappingInfoHandlerMapping mapping : context.getBeansOfType(RequestMappingInfoHandlerMapping.class).values()) {
+            for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : mapping.getHandlerMethods().entrySet()) {
+                Set<RequestMethod> methods = entry.getKey().getMethodsCondition().getMethods();
+                boolean annotated = methodRules != null && !isEmpty(methodRules.getAttributes(
+                        entry.getValue().getMethod(), entry.getValue().getBeanType()));
+                for (String path : entry.getKey().getPatternValues()) {
+                    if (!isLiteral(path)) {
+                        continue;
+                    }
+                    Access access = annotated ? Access.ROLE_GATED : classify(webRules, path, methods);
+                    // Two endpoints on one path, say GET and POST, the path is as restricted as the strictest of them
+                    built.merge(path, access, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+                }
+            }
+        }
+        routes = Map.copyOf(built);
+
+        Set<String> publicPaths = new TreeSet<>();
+        built.forEach((path, access) -> {
+            if (access == Access.PUBLIC) {
+                publicPaths.add(path);
+            }
+        });
+        logger.info("Route table has {} routes, public are {}", built.size(), publicPaths);
+    }
+
+    // The access of the request's path, or null when the path is not in the table
+    public Access lookup(HttpServletRequest request) {
+        // The path Spring Security matches its rules against
+        String path = request.getServletPath();
+        if (request.getPathInfo() != null) {
+            path += request.getPathInfo();
+        }
+        return routes.get(path);
+    }
+
+    public Access lookup(String path) {
+        return routes.get(path);
+    }
+
+    public boolean isPublic(HttpServletRequest request) {
+        return lookup(request) == Access.PUBLIC;
+    }
+
+    // Asks the rules of WebSecurityConfig about a request to the path, with each of the endpoint's HTTP methods
+    private Access classify(FilterInvocationSecurityMetadataSource webRules, String path, Set<RequestMethod> methods) {
+        Access access = Access.PUBLIC;
+        for (RequestMethod method : methods.isEmpty() ? Set.of(RequestMethod.GET) : methods) {
+            Access forMethod = classify(webRules.getAttributes(new FilterInvocation(path, method.name())));
+            access = forMethod.compareTo(access) > 0 ? forMethod : access;
+        }
+        return access;
+    }
+
+    // The attributes of a URL rule are its expression, such as permitAll, authenticated or hasRole('ADMIN')
+    private static Access classify(Collection<ConfigAttribute> attributes) {
+        if (isEmpty(attributes)) {
+            return Access.AUTHENTICATED;
+        }
+        Access access = Access.PUBLIC;
+        for (ConfigAttribute attribute : attributes) {
+            String expression = attribute.toString();
+            Access forAttribute = PERMIT_ALL.equals(expression) ? Access.PUBLIC
+                    : expression.startsWith("has") ? Access.ROLE_GATED
+                    : Access.AUTHENTICATED;
+            access = forAttribute.compareTo(access) > 0 ? forAttribute : access;
+        }
+        return access;
+    }
+
+    private FilterInvocationSecurityMetadataSource webSecurityMetadataSource() {
+        FilterChainProxy filterChainProxy = context.getBeanProvider(FilterChainProxy.class).getIfAvailable();
+        if (filterChainProxy == null) {
+            return null;
+        }
+        for (SecurityFilterChain chain : filterChainProxy.getFilterChains()) {
+            for (Filter filter : chain.getFilters()) {
+                if (filter instanceof FilterSecurityInterceptor) {
+                    return ((FilterSecurityInterceptor) filter).getSecurityMetadataSource();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLiteral(String path) {
+        return path.indexOf('{') < 0 && path.indexOf('*') < 0 && path.indexOf('?') < 0;
+    }
+
+    private static boolean isEmpty(Collection<?> collection) {
+        return collection == null || collection.isEmpty();
+    }
+}
@@ -0,0 +1,66 @@
+package no.noroff.statelessSecurity.securityUtil.configs;
+
+import no.noroff.statelessSecurity.securityUtil.access.CompiledAccessDecisionManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.AccessDecisionManager;
+import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
+import org.springframework.security.config.annotation.method.configuration.GlobalMethodSecurityConfiguration;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ This configuration enables @PreAuthorize and @RolesAllowed on our endpoints.
+ Spring evaluates those by running the SpEL expression, or the voters, on every call. With compiled
+ authorization switched on we instead compile the annotations of every endpoint into a role mask once the
+ application has started, see CompiledAccessDecisionManager. Spring's own decision manager stays behind it
+ for whatever cannot be compiled.
+*/
+
+@Profile("!reactive")
+@EnableGlobalMethodSecurity(
+        jsr250Enabled = true,
+        prePostEnabled = true)
+public class MethodSecurityConfig extends GlobalMethodSecurityConfiguration {
+    // Dependencies
+    @Autowired
+    private ApplicationContext context;
+
+    @Value("${noroff.app.compiledAuthorization}")
+    private boolean compiledAuthorization;
+
+    // Fields
+    private CompiledAccessDecisionManager compiledAccessDecisionManager;
+
+    // Overrides
+    @Override
+    protected AccessDecisionManager accessDecisionManager() {
+        AccessDecisionManager voters = super.accessDecisionManager();
+        if (!compiledAuthorization) {
+            return voters;
+        }
+        compiledAccessDecisionManager = new CompiledAccessDecisionManager(voters);
+        return compiledAccessDecisionManager;
+    }
+
+    // By now every controller is registered with the handler mapping, so all endpoints are known
+    @Override
+    public void afterSingletonsInstantiated() {
+        super.afterSingletonsInstantiated();
+        if (compiledAccessDecisionManager == null) {
+            return;
+        }
+        Map<Method, Class<?>> endpoints = new HashMap<>();
+        for (HandlerMethod handlerMethod : context.getBean("requestMappingHandlerMapping",
+                RequestMappingHandlerMapping.class).getHandlerMethods().values()) {
+            endpoints.put(handlerMethod.getMethod(), handlerMethod.getBeanType());
+        }
+        compiledAccessDecisionManager.compile(endpoints, methodSecurityMetadataSource());
+    }
+}
@@ -0,0 +1,39 @@
+package no.noroff.statelessSecurity.securityUtil.configs;
+
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
+import no.noroff.statelessSecurity.securityUtil.metrics.TimedPasswordEncoder;
+import no.noroff.statelessSecurity.securityUtil.services.CalibratedBCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/*
+ This configuration provides the password encoder, both WebSecurityConfig and ReactiveSecurityConfig use it.
+*/
+
+@Configuration
+public class PasswordEncoderConfig {
+    // Dependencies
+    @Autowired
+    private AuthMetrics authMetrics;
+
+    /*
+     The BCrypt strength to use. When a target time is set we instead measure this machine at startup and
+     use the highest strength that hashes within that time, with the configured strength as the minimum.
+    */
+    @Value("${noroff.app.bcryptStrength}")
+    private int bcryptStrength;
+    @Value("${noroff.app.bcryptTargetMs}")
+    private long bcryptTargetMs;
+
+    // The chosen password encoder is Bcrypt, timed so hashing shows up in our metrics
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        PasswordEncoder encoder = bcryptTargetMs > 0
+                ? CalibratedBCryptPasswordEncoder.calibrate(bcryptStrength, bcryptTargetMs)
+                : new CalibratedBCryptPasswordEncoder(bcryptStrength);
+        return new TimedPasswordEncoder(encoder, authMetrics);
+    }
+}
@@ -0,0 +1,28 @@
+package no.noroff.statelessSecurity.securityUtil.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/*
+ Spring Boot leaves out the JDBC DataSource as soon as there is an R2DBC ConnectionFactory.
+ The reactive profile still needs it: Hibernate creates the tables, and the roles, token epochs and user
+ imports are read and written over JDBC, none of them while answering a request on the event loop.
+ So we create it from the usual spring.datasource properties ourselves.
+*/
+
+@Configuration
+@Profile("reactive")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReactiveDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+}
@@ -0,0 +1,130 @@
+package no.noroff.statelessSecurity.securityUtil.configs;
+
+import no.noroff.statelessSecurity.securityUtil.jwt.InvalidTokenLogger;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.jwt.ReactiveAuthTokenFilter;
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
+import no.noroff.statelessSecurity.securityUtil.services.PasswordHashingExecutor;
+import no.noroff.statelessSecurity.securityUtil.services.ReactiveUserDetailsServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ This is the configuration in charge of security on the reactive stack, the reactive profile's WebSecurityConfig.
+ The rules are the same, with two differences:
+    - Method security only works on methods that return a publisher, and TestController returns strings,
+      so the roles its endpoints need are checked here by path instead
+    - BCrypt runs on a Scheduler over the PasswordHashingExecutor, never on the event loop. The executor
+      keeps its bounded queue, a full queue fails the sign in so the client gets a 503
+    - Token signatures that are not in the token cache are checked on a scheduler of their own, with a thread
+      per core since the work is pure computation. It is not the hashing executor, a full hashing queue should
+      turn away sign ins, not every authenticated request
+*/
+
+@Configuration
+@Profile("reactive")
+@EnableWebFluxSecurity
+public class ReactiveSecurityConfig {
+    // Dependencies
+    @Autowired
+    private ReactiveUserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private AuthMetrics authMetrics;
+
+    @Autowired
+    private InvalidTokenLogger invalidTokenLogger;
+
+    // From PasswordEncoderConfig
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveSecurityConfig.class);
+
+    // Tomcat is on the classpath for the servlet stack and would otherwise be picked to run WebFlux as well
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public Scheduler passwordHashingScheduler(PasswordHashingExecutor hashingExecutor) {
+        return Schedulers.fromExecutor(hashingExecutor);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler tokenVerificationScheduler() {
+        return Schedulers.newParallel("jwt-verification", Runtime.getRuntime().availableProcessors());
+    }
+
+    // Checks passwords for ReactiveAuthController, and hashes them again when their BCrypt strength is outdated
+    @Bean
+    public ReactiveAuthenticationManager reactiveAuthenticationManager(Scheduler passwordHashingScheduler) {
+        UserDetailsRepositoryReactiveAuthenticationManager authenticationManager =
+                new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
+        authenticationManager.setPasswordEncoder(passwordEncoder);
+        authenticationManager.setUserDetailsPasswordService(userDetailsService);
+        authenticationManager.setScheduler(passwordHashingScheduler);
+        return authenticationManager;
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, Scheduler tokenVerificationScheduler) {
+        return http
+                // Disable CSRF and everything that would keep a session or ask for a password
+                .csrf().disable()
+                .httpBasic().disable()
+                .formLogin().disable()
+                .logout().disable()
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                // Unauthorized requests get a 401, logged within the same budget as on the servlet stack
+                .exceptionHandling()
+                .authenticationEntryPoint((exchange, e) -> {
+                    invalidTokenLogger.warn(logger, "Unauthorized error: {}", e.getMessage());
+                    exchange.getResponse().setStatusCode(HttpStatus.UNAUTHORIZED);
+                    return Mono.empty();
+                })
+                .and()
+                // Set permissions on endpoints
+                .authorizeExchange()
+                .pathMatchers("/api/auth/logout").authenticated()
+                .pathMatchers("/api/auth/**").permitAll()
+                .pathMatchers("/actuator/health").permitAll()
+                // The auth metrics are for admins only, as on the servlet stack
+                .pathMatchers("/actuator/prometheus").hasRole("ADMIN")
+                .pathMatchers("/.well-known/jwks.json").permitAll()
+                // The roles from TestController's annotations
+                .pathMatchers("/api/test/user").hasAnyRole("USER", "MODERATOR", "ADMIN")
+                .pathMatchers("/api/test/mod").hasRole("MODERATOR")
+                .pathMatchers("/api/test/admin").hasRole("ADMIN")
+                .pathMatchers("/api/test/**").permitAll()
+                .anyExchange().authenticated()
+                .and()
+                // Add JWT token filter
+                .addFilterAt(new ReactiveAuthTokenFilter(jwtUtil, userDetailsService, authMetrics, invalidTokenLogger,
+                                tokenVerificationScheduler),
+                        SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package no.noroff.statelessSecurity.securityUtil.configs;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ Sends the statements of read-only transactions to a read replica, and everything else to the primary.
+ The replicas take turns, each connection goes to the next one.
+ A replica applies the primary's changes a little later, so for replicaLagMs after a read-write transaction
+ commits, reads go to the primary as well. Whoever signs up and signs in straight away is then found.
+ Statements outside a transaction also go to the primary, but do not start that window, so health checks and
+ other plain reads do not keep every read on the primary.
+ This only knows about writes made through this instance, another instance's writes can still be missing
+ from a replica for as long as it lags behind.
+ Which database to use is decided when a connection is taken, so this must sit behind a
+ LazyConnectionDataSourceProxy, which takes the connection once the transaction has been marked read-only.
+*/
+
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    // Fields
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica-";
+
+    private final String[] replicaKeys;
+    private final long replicaLagNanos;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    // Reads go to the primary until System.nanoTime() passes this
+    private volatile long primaryUntil = System.nanoTime();
+
+    // Starts the window once a read-write transaction has committed, one that rolled back changed nothing
+    private final TransactionSynchronization writeCommitted = new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+            wrote();
+        }
+    };
+
+    // Constructors
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, long replicaLagMs) {
+        this.replicaKeys = new String[replicas.size()];
+        this.replicaLagNanos = TimeUnit.MILLISECONDS.toNanos(replicaLagMs);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaKeys[i] = REPLICA + i;
+            targets.put(replicaKeys[i], replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    // Overrides
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // Registered once per transaction, the synchronizations are a set
+            if (TransactionSynchronizationManager.isActualTransactionActive()
+                    && TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(writeCommitted);
+            }
+            return PRIMARY;
+        }
+        if (replicaKeys.length == 0 || System.nanoTime() - primaryUntil < 0) {
+            return PRIMARY;
+        }
+        return replicaKeys[Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.length)];
+    }
+
+    private void wrote() {
+        primaryUntil = System.nanoTime() + replicaLagNanos;
+    }
+}
@@ -0,0 +1,102 @@
+package no.noroff.statelessSecurity.securityUtil.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ When noroff.app.replicaUrls lists read replicas, reads in read-only transactions are spread over them and
+ only writes, and the reads right after them, go to the spring.datasource primary, see ReadWriteRoutingDataSource.
+ Looking up the user of every authenticated request is such a read.
+ Each replica gets a pool of its own, set up like the primary's. Without replicas this is left out and
+ Spring Boot creates the single DataSource as before. The reactive profile always uses the primary alone.
+ The pools are not beans, Spring Boot would otherwise run its schema initialisation against each of them.
+ Their metrics are published under the pool names primary and replica-0, replica-1 and so on.
+*/
+
+@Configuration
+@Profile("!reactive")
+@ConditionalOnExpression("'${noroff.app.replicaUrls}' != ''")
+@EnableConfigurationProperties(DataSourceProperties.class)
+public class ReplicaDataSourceConfig {
+    // Dependencies
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaDataSourceConfig.class);
+
+    @Value("${noroff.app.replicaUrls}")
+    private List<String> replicaUrls;
+    @Value("${noroff.app.replicaUsername}")
+    private String replicaUsername;
+    @Value("${noroff.app.replicaPassword}")
+    private String replicaPassword;
+    @Value("${noroff.app.replicaLagMs}")
+    private long replicaLagMs;
+
+    // The DataSource everything else uses
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        // The pool settings Spring Boot would have given its own DataSource
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        primary.setMetricRegistry(meterRegistry);
+        List<HikariDataSource> pools = new ArrayList<>(List.of(primary));
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica = new HikariDataSource();
+            primary.copyStateTo(replica);
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(replicaUsername);
+            replica.setPassword(replicaPassword);
+            replica.setReadOnly(true);
+            pools.add(replica);
+            replicas.add(replica);
+        }
+        logger.info("Routing read-only transactions to {} replicas", replicas.size());
+
+        ReadWriteRoutingDataSource readWriteDataSource = new ReadWriteRoutingDataSource(primary, replicas, replicaLagMs);
+        readWriteDataSource.afterPropertiesSet();
+        return new PooledDataSourceProxy(readWriteDataSource, pools);
+    }
+
+    // Spring closes the DataSource once everything that uses it has been closed, and this closes the pools with it
+    private static final class PooledDataSourceProxy extends LazyConnectionDataSourceProxy implements Closeable {
+        private final List<HikariDataSource> pools;
+
+        private PooledDataSourceProxy(DataSource target, List<HikariDataSource> pools) {
+            super(target);
+            this.pools = pools;
+        }
+
+        @Override
+        public void close() {
+            pools.forEach(HikariDataSource::close);
+        }
+    }
+}
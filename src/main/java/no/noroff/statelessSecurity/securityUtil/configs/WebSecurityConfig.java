@@ -6,28 +6,27 @@ import no.noroff.statelessSecurity.securityUtil.services.UserDetailsServiceImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
-import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.core.GrantedAuthorityDefaults;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /*
  This is the configuration in charge for all our security.
  We use all our other services and configuration classes here.
+ It secures the servlet stack, with the reactive profile ReactiveSecurityConfig takes its place.
+ The annotations on our endpoints are enforced by MethodSecurityConfig.
 */
 
 @EnableWebSecurity
-@EnableGlobalMethodSecurity(
-        jsr250Enabled = true,
-        prePostEnabled = true)
+@Profile("!reactive")
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     /*
@@ -45,20 +44,19 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private AuthEntryPointJwt authEntryPointJwt;
 
+    // From PasswordEncoderConfig
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     /*
      Here we tell Spring Security how to handle our users, through the UserDetailsServiceImpl
      we have created. It also needs a password encoding method otherwise it simply will encode passwords
-     as plain text.
+     as plain text. Because UserDetailsServiceImpl is also a UserDetailsPasswordService, passwords hashed
+     with another strength are hashed again when their user signs in.
     */
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder());
-    }
-
-    // The chosen password encoder is Bcrypt
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        auth.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder);
     }
 
     @Override
@@ -73,8 +71,19 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
                 // Set permissions on endpoints
                 .authorizeRequests()
+                // Logging out needs the token that is being revoked
+                .antMatchers("/api/auth/logout").authenticated()
                 // Our public endpoints
                 .antMatchers("/api/auth/**").permitAll()
+                // Health checks do not carry a token
+                .antMatchers("/actuator/health").permitAll()
+                /*
+                 The metrics tell how often sign ins fail and tokens are rejected, so only admins may read them.
+                 The Prometheus scraper signs in as one, or scrapes management.server.port from inside the network.
+                */
+                .antMatchers("/actuator/prometheus").hasRole("ADMIN")
+                // Our public keys, for other services that verify our tokens
+                .antMatchers("/.well-known/jwks.json").permitAll()
                 // Our protected endpoints
                 .antMatchers("/api/test/**").permitAll()
                 .anyRequest().authenticated();
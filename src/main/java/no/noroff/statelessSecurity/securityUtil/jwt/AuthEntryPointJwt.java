@@ -2,6 +2,7 @@ package no.noroff.statelessSecurity.securityUtil.jwt;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
@@ -17,6 +18,7 @@ import java.io.IOException;
     When something goes wrong with the Jwts that come in, this class decides what to do.
     For example, if there is no Jwt present, it returns that the client is unauthorized.
     They will then need to go and get a valid token by logging in.
+    Every request without a valid token ends here, so we only log as many as InvalidTokenLogger allows.
  */
 
 @Component
@@ -24,10 +26,13 @@ public class AuthEntryPointJwt implements AuthenticationEntryPoint {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthEntryPointJwt.class);
 
+    @Autowired
+    private InvalidTokenLogger invalidTokenLogger;
+
     @Override
     public void commence(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, AuthenticationException e) throws IOException, ServletException {
         // We log what was wrong with the authorization
-        logger.error("Unauthorized error: {}", e.getMessage());
+        invalidTokenLogger.warn(logger, "Unauthorized error: {}", e.getMessage());
         // Send a response to the client to let them know they are unauthorized, this is the 401 we see.
         httpServletResponse.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Error: Unauthorized");
     }
@@ -1,15 +1,17 @@
 package no.noroff.statelessSecurity.securityUtil.jwt;
 
-import no.noroff.statelessSecurity.securityUtil.services.UserDetailsServiceImpl;
+import no.noroff.statelessSecurity.securityUtil.access.RouteTable;
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import javax.servlet.FilterChain;
@@ -24,10 +26,12 @@ import java.io.IOException;
  It does it once because our class extends OncePerRequestFilter.
  This filter does the following:
     - Extracts the JWT from the header
-    - Extracts the username from the JWT
-    - Fetches the user with that username from the database
+    - Parses and verifies the JWT once, extracting the username from it
+    - Fetches the user with that username from the database through our cache, or in TOKEN mode takes the user from the JWT itself
     - Creates and Authorization object from that user, using UserServiceImpl.
     - Adds that Authorization object to Spring Security's context to be used throughout the application.
+ Requests to public routes, see RouteTable, skip all of this. Nothing there looks at the user, so a token sent
+ along with them is not even parsed.
 */
 
 @Component
@@ -37,7 +41,22 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     private JwtUtil jwtUtil;
 
     @Autowired
-    private UserDetailsServiceImpl userDetailsService;
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private AuthMetrics authMetrics;
+
+    @Autowired
+    private InvalidTokenLogger invalidTokenLogger;
+
+    @Autowired
+    private RouteTable routeTable;
+
+    // Whether the authentication records the client's address, nothing we have reads it
+    @Value("${noroff.app.jwtAuthenticationDetails}")
+    private boolean authenticationDetails;
+
+    private final WebAuthenticationDetailsSource authenticationDetailsSource = new WebAuthenticationDetailsSource();
 
     /*
      Here we create a singleton constant logger
@@ -45,21 +64,44 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     */
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
+    private static final String AUTHORIZATION = "Authorization";
+
     // Overrides
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return routeTable.isPublic(request);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse, FilterChain filterChain) throws ServletException, IOException {
         try {
-            // First we need to extract the JWT from the requests
-            String jwt = parseJwt(httpServletRequest);
+            // Each stage is timed, recording a stage returns the time the next one starts
+            long stageStart = System.nanoTime();
+            // First we need to find the JWT in the request, it is left where it is in the header
+            String headerAuth = httpServletRequest.getHeader(AUTHORIZATION);
+            boolean hasToken = JwtUtil.hasBearerToken(headerAuth);
+            stageStart = authMetrics.recordFilterStage(AuthMetrics.FilterStage.HEADER, stageStart);
             /*
-             If the token is present in the request header and it is valid
-             according to our JwtUtil class, then we may proceed.
+             If the token is present in the request header we parse it once with our JwtUtil class.
+             Only when it is valid may we proceed, the parsed result already holds everything we need.
             */
-            if(jwt != null && jwtUtil.validateJwtToken(jwt)){
-                // Extract username from the JWT
-                String username = jwtUtil.getUserNameFromJwtToken(jwt);
-                // Use our UserDetailsService to fetch the user by their username
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            ParsedJwt parsedJwt = null;
+            if (hasToken) {
+                parsedJwt = jwtUtil.parseJwtToken(headerAuth, JwtUtil.BEARER_PREFIX.length());
+                stageStart = authMetrics.recordFilterStage(AuthMetrics.FilterStage.VERIFY, stageStart);
+            }
+            if(parsedJwt != null && parsedJwt.isValid()){
+                // Extract username from the parsed JWT
+                String username = parsedJwt.getSubject();
+                /*
+                 In TOKEN mode the user was already built from the JWT's claims.
+                 Otherwise we use our cached UserDetailsService to fetch the user by their username.
+                */
+                UserDetails userDetails = parsedJwt.getPrincipal();
+                if (userDetails == null) {
+                    userDetails = userDetailsCache.loadUserByUsername(username);
+                }
+                stageStart = authMetrics.recordFilterStage(AuthMetrics.FilterStage.USER_LOAD, stageStart);
                 /*
                  We then use our UserDetails object and create and Authentication object out of it.
                  In this case, its a UsernamePasswordAuthenticationToken.
@@ -67,32 +109,37 @@ public class AuthTokenFilter extends OncePerRequestFilter {
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 /*
-                 We need to tell Spring Security how this authentication object was created.
-                 We did it through our http servlet.
+                 We can tell Spring Security how this authentication object was created, through our http servlet.
+                 Only when configured to, as it costs an object and a session lookup on every request.
                 */
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(httpServletRequest));
+                if (authenticationDetails) {
+                    authentication.setDetails(authenticationDetailsSource.buildDetails(httpServletRequest));
+                }
                 // Finally, we set the security context with our new authentication object
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                authMetrics.recordFilterStage(AuthMetrics.FilterStage.CONTEXT, stageStart);
             }
 
         } catch (Exception e) {
-            logger.error("Cannot set user authentication: " + e.getMessage());
+            // For example a valid token for a user that has since been deleted
+            invalidTokenLogger.warn(logger, "Cannot set user authentication: {}", e.getMessage());
         }
 
         // Here we are allowing the rest of the filter chain to continue.
         filterChain.doFilter(httpServletRequest, httpServletResponse);
     }
 
-    private String parseJwt(HttpServletRequest httpServletRequest) {
+    // Used by the logout endpoint, to find the token it revokes
+    public static String parseJwt(HttpServletRequest httpServletRequest) {
         // Extract the Authorization header from the request
-        String headerAuth = httpServletRequest.getHeader("Authorization");
+        String headerAuth = httpServletRequest.getHeader(AUTHORIZATION);
         // Check if the Authorization header has a Bearer token
-        if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
+        if (JwtUtil.hasBearerToken(headerAuth)) {
             /*
              If it does we return the token itself, which is the string minus "Bearer ".
              We use .substring to achieve this split
             */
-            return headerAuth.substring(7);
+            return headerAuth.substring(JwtUtil.BEARER_PREFIX.length());
         }
         return null;
     }
@@ -0,0 +1,65 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import io.jsonwebtoken.Claims;
+
+import java.util.function.Function;
+
+/*
+ The names JwtUtil gives the claims it adds to a token, next to the standard sub, jti, iat and exp.
+ STANDARD uses readable names and lists roles by name, like {"id":1,"ep":0,"email":"...","roles":["USER","ADMIN"]}.
+ COMPACT uses one letter names and sends roles as a RoleMask, like {"u":1,"e":0,"m":"...","r":5}, which makes
+ the token and with it every Authorization header shorter, and leaves less JSON to parse and less to sign.
+ A RoleMask has a bit per RoleType ordinal, so new roles have to be added at the end of RoleType.
+ Tokens are read in either profile whichever one we issue, so the profile can be switched while tokens
+ issued with the other one are still in use.
+*/
+
+public enum ClaimProfile {
+    STANDARD("id", "ep", "email", "roles"),
+    COMPACT("u", "e", "m", "r");
+
+    // Fields
+    private static final ClaimProfile[] PROFILES = values();
+
+    private final String id;
+    private final String epoch;
+    private final String email;
+    private final String roles;
+
+    // Constructors
+    ClaimProfile(String id, String epoch, String email, String roles) {
+        this.id = id;
+        this.epoch = epoch;
+        this.email = email;
+        this.roles = roles;
+    }
+
+    // The value of a claim under the name any profile gives it, or null when the token does not have it
+    public static <T> T read(Claims claims, Function<ClaimProfile, String> name, Class<T> type) {
+        for (ClaimProfile profile : PROFILES) {
+            T value = claims.get(name.apply(profile), type);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    // A list of role names without ROLE_ in STANDARD, a RoleMask in COMPACT
+    public String getRoles() {
+        return roles;
+    }
+}
@@ -0,0 +1,358 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ Just enough JSON for the header and claims of a token, used by Hs512Codec instead of jjwt's Jackson mapper.
+ Reading gives the same types Jackson does, so the claims behave the same whichever engine parsed them:
+ objects are maps, arrays are lists, and whole numbers are Integer when they fit, otherwise Long or BigInteger.
+ Anything that is not well formed JSON is refused with null rather than an exception.
+ Writing handles the values our claims can hold, strings, numbers, booleans, null, collections and maps.
+*/
+
+final class ClaimsJson {
+    // Fields
+
+    // More digits than this may not fit in a long
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final byte[] json;
+    private final int length;
+    private int position;
+
+    // Constructors
+    private ClaimsJson(byte[] json, int length) {
+        this.json = json;
+        this.length = length;
+    }
+
+    // The object in the first length bytes of the UTF-8 JSON, or null when it is not a well formed object
+    static Map<String, Object> read(byte[] json, int length) {
+        ClaimsJson reader = new ClaimsJson(json, length);
+        reader.skipWhitespace();
+        if (!reader.peek('{')) {
+            return null;
+        }
+        Map<String, Object> object = reader.readObject();
+        reader.skipWhitespace();
+        return reader.position == length ? object : null;
+    }
+
+    static void write(Map<String, ?> object, StringBuilder out) {
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<String, ?> entry : object.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            writeString(entry.getKey(), out);
+            out.append(':');
+            writeValue(entry.getValue(), out);
+        }
+        out.append('}');
+    }
+
+    // Reading, each method returns null and leaves the position anywhere when the JSON is not well formed
+
+    private Object readValue() {
+        skipWhitespace();
+        if (position >= length) {
+            return null;
+        }
+        switch (json[position]) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                return readLiteral("true", Boolean.TRUE);
+            case 'f':
+                return readLiteral("false", Boolean.FALSE);
+            default:
+                return readNumber();
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        position++;
+        Map<String, Object> object = new LinkedHashMap<>();
+        skipWhitespace();
+        if (peek('}')) {
+            position++;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (!peek('"')) {
+                return null;
+            }
+            String key = readString();
+            skipWhitespace();
+            if (key == null || !peek(':')) {
+                return null;
+            }
+            position++;
+            skipWhitespace();
+            Object value;
+            if (peekLiteral("null")) {
+                position += 4;
+                value = null;
+            } else if ((value = readValue()) == null) {
+                return null;
+            }
+            object.put(key, value);
+            skipWhitespace();
+            if (peek(',')) {
+                position++;
+            } else if (peek('}')) {
+                position++;
+                return object;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        position++;
+        List<Object> array = new ArrayList<>();
+        skipWhitespace();
+        if (peek(']')) {
+            position++;
+            return array;
+        }
+        while (true) {
+            skipWhitespace();
+            Object value;
+            if (peekLiteral("null")) {
+                position += 4;
+                value = null;
+            } else if ((value = readValue()) == null) {
+                return null;
+            }
+            array.add(value);
+            skipWhitespace();
+            if (peek(',')) {
+                position++;
+            } else if (peek(']')) {
+                position++;
+                return array;
+            } else {
+                return null;
+            }
+        }
+    }
+
+    // Strings without escapes, which is every string we write, are decoded in one go
+    private String readString() {
+        int start = ++position;
+        StringBuilder unescaped = null;
+        while (position < length) {
+            byte b = json[position];
+            if (b == '"') {
+                String run = new String(json, start, position - start, StandardCharsets.UTF_8);
+                position++;
+                return unescaped == null ? run : unescaped.append(run).toString();
+            }
+            if (b >= 0 && b < 0x20) {
+                return null;
+            }
+            if (b == '\\') {
+                if (unescaped == null) {
+                    unescaped = new StringBuilder();
+                }
+                unescaped.append(new String(json, start, position - start, StandardCharsets.UTF_8));
+                if (!readEscape(unescaped)) {
+                    return null;
+                }
+                start = position;
+            } else {
+                position++;
+            }
+        }
+        return null;
+    }
+
+    private boolean readEscape(StringBuilder out) {
+        if (position + 1 >= length) {
+            return false;
+        }
+        byte escaped = json[position + 1];
+        position += 2;
+        switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+                out.append((char) escaped);
+                return true;
+            case 'b':
+                out.append('\b');
+                return true;
+            case 'f':
+                out.append('\f');
+                return true;
+            case 'n':
+                out.append('\n');
+                return true;
+            case 'r':
+                out.append('\r');
+                return true;
+            case 't':
+                out.append('\t');
+                return true;
+            case 'u':
+                if (position + 4 > length) {
+                    return false;
+                }
+                int c = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(json[position++], 16);
+                    if (digit < 0) {
+                        return false;
+                    }
+                    c = (c << 4) | digit;
+                }
+                out.append((char) c);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private Object readNumber() {
+        int start = position;
+        if (peek('-')) {
+            position++;
+        }
+        int digits = skipDigits();
+        // No leading zeros, as in JSON
+        if (digits == 0 || (digits > 1 && json[position - digits] == '0')) {
+            return null;
+        }
+        boolean integral = true;
+        if (peek('.')) {
+            position++;
+            integral = false;
+            if (skipDigits() == 0) {
+                return null;
+            }
+        }
+        if (peek('e') || peek('E')) {
+            position++;
+            integral = false;
+            if (peek('+') || peek('-')) {
+                position++;
+            }
+            if (skipDigits() == 0) {
+                return null;
+            }
+        }
+        String number = new String(json, start, position - start, StandardCharsets.US_ASCII);
+        if (!integral) {
+            return Double.parseDouble(number);
+        }
+        if (digits > MAX_LONG_DIGITS) {
+            BigInteger big = new BigInteger(number);
+            return big.bitLength() < Long.SIZE ? (Object) big.longValue() : big;
+        }
+        long value = Long.parseLong(number);
+        return value == (int) value ? (Object) (int) value : value;
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!peekLiteral(literal)) {
+            return null;
+        }
+        position += literal.length();
+        return value;
+    }
+
+    private boolean peekLiteral(String literal) {
+        if (position + literal.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (json[position + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean peek(char c) {
+        return position < length && json[position] == c;
+    }
+
+    private int skipDigits() {
+        int start = position;
+        while (position < length && json[position] >= '0' && json[position] <= '9') {
+            position++;
+        }
+        return position - start;
+    }
+
+    private void skipWhitespace() {
+        while (position < length) {
+            byte b = json[position];
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    // Writing
+
+    private static void writeValue(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String) {
+            writeString((String) value, out);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Collection) {
+            out.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeValue(element, out);
+            }
+            out.append(']');
+        } else if (value instanceof Map) {
+            @SuppressWarnings("unchecked")
+            Map<String, ?> object = (Map<String, ?>) value;
+            write(object, out);
+        } else {
+            throw new IllegalArgumentException("Cannot write a " + value.getClass().getName() + " as a claim");
+        }
+    }
+
+    private static void writeString(String value, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+}
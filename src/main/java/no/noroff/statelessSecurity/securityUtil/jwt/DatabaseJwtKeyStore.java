@@ -0,0 +1,47 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import no.noroff.statelessSecurity.models.domain.JwtSigningKey;
+import no.noroff.statelessSecurity.repositories.JwtSigningKeyRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/*
+ Keeps the signing keys in the jwt_keys table of the database every instance already shares.
+ Everything runs in a read-write transaction, so it goes to the primary database and never to a read replica
+ that may not have the key another instance just stored, see ReadWriteRoutingDataSource.
+*/
+
+@Component
+public class DatabaseJwtKeyStore implements JwtKeyStore {
+    // Dependencies
+    @Autowired
+    private JwtSigningKeyRepository keyRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Override
+    public List<JwtSigningKey> findKeys(String algorithm) {
+        return transactionTemplate.execute(status -> keyRepository.findByAlgorithmOrderBySlot(algorithm));
+    }
+
+    // The unique constraint on the slot decides between instances storing a key at the same time
+    @Override
+    public boolean insertKey(JwtSigningKey key) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> keyRepository.saveAndFlush(key));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void deleteKeysBefore(String algorithm, long slot) {
+        transactionTemplate.executeWithoutResult(status -> keyRepository.deleteByAlgorithmAndSlotBefore(algorithm, slot));
+    }
+}
@@ -0,0 +1,210 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.impl.DefaultClaims;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+/*
+ Signs and verifies HS512 tokens with the shared secret, without going through jjwt. It is the NATIVE JwtEngine.
+ jjwt resolves a codec for every part of a token, maps the JSON with Jackson and reports every problem with an
+ exception. Our tokens always have the same shape, so this works on bytes instead:
+    - The header must be exactly {"alg":"HS512"}, which is what jjwt writes for the shared secret
+    - The signature is computed with a Mac kept per thread and compared in constant time, before the claims
+      are even decoded
+    - The claims are read by ClaimsJson and handed out as jjwt Claims, so the rest of the code cannot tell
+      which engine parsed a token
+    - Problems come back as a Result instead of an exception
+ Tokens are the same on the wire as jjwt's, either engine verifies the tokens the other one signed.
+ A token that is not in our shape, with a kid, another algorithm, compression or a not-before time, is
+ UNHANDLED and left to jjwt, which then decides exactly as it always has.
+*/
+
+public final class Hs512Codec {
+    // The outcome of decoding a token, with its claims when it is valid
+    public static final class Result {
+        private static final Result UNHANDLED = new Result(null, null);
+        private static final Result[] INVALID = new Result[ParsedJwt.Failure.values().length];
+
+        static {
+            for (ParsedJwt.Failure failure : ParsedJwt.Failure.values()) {
+                INVALID[failure.ordinal()] = new Result(failure, null);
+            }
+        }
+
+        private final ParsedJwt.Failure failure;
+        private final Claims claims;
+
+        private Result(ParsedJwt.Failure failure, Claims claims) {
+            this.failure = failure;
+            this.claims = claims;
+        }
+
+        // The token is not in the shape we handle, it must be parsed with jjwt
+        public boolean isUnhandled() {
+            return this == UNHANDLED;
+        }
+
+        public boolean isValid() {
+            return failure == ParsedJwt.Failure.NONE;
+        }
+
+        // NONE for a valid token, null when the token is unhandled
+        public ParsedJwt.Failure getFailure() {
+            return failure;
+        }
+
+        public Claims getClaims() {
+            return claims;
+        }
+    }
+
+    // Fields
+    private static final String ALGORITHM = "HmacSHA512";
+    private static final int SIGNATURE_BYTES = 64;
+    // The base64url of 64 bytes without padding
+    private static final int SIGNATURE_LENGTH = 86;
+
+    private static final String HEADER = "{\"alg\":\"HS512\"}";
+    private static final String ENCODED_HEADER = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(HEADER.getBytes(StandardCharsets.US_ASCII));
+    private static final byte[] HEADER_BYTES = HEADER.getBytes(StandardCharsets.US_ASCII);
+
+    private static final String EXPIRATION = "exp";
+    private static final String NOT_BEFORE = "nbf";
+
+    // A Mac and the buffers to use it with for every thread, the Mac is set up with the key once
+    private final ThreadLocal<Scratch> scratch;
+
+    // Constructors
+    public Hs512Codec(Key key) {
+        scratch = ThreadLocal.withInitial(() -> new Scratch(key));
+        // Fails at startup rather than on the first token when the key cannot be used
+        scratch.get();
+    }
+
+    // Signs the claims, which are written in the order of the map
+    public String encode(Map<String, ?> claims) {
+        Scratch s = scratch.get();
+        StringBuilder json = s.json;
+        json.setLength(0);
+        ClaimsJson.write(claims, json);
+        String payload = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(json.toString().getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder token = new StringBuilder(ENCODED_HEADER.length() + payload.length() + SIGNATURE_LENGTH + 2)
+                .append(ENCODED_HEADER).append('.').append(payload);
+        byte[] signature = s.sign(token, token.length());
+        return token.append('.')
+                .append(Base64.getUrlEncoder().withoutPadding().encodeToString(signature))
+                .toString();
+    }
+
+    public Result decode(String token) {
+        return decode(token, System.currentTimeMillis());
+    }
+
+    // The same with the time to check the expiry against
+    Result decode(String token, long now) {
+        if (token == null || token.isEmpty()) {
+            return Result.INVALID[ParsedJwt.Failure.EMPTY.ordinal()];
+        }
+        int firstDot = token.indexOf('.');
+        int secondDot = token.indexOf('.', firstDot + 1);
+        if (firstDot <= 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return Result.INVALID[ParsedJwt.Failure.MALFORMED.ordinal()];
+        }
+        Scratch s = scratch.get();
+        int headerLength = JwtPreValidator.decode(token, 0, firstDot, s.buffer(firstDot));
+        if (headerLength < 0) {
+            return Result.INVALID[ParsedJwt.Failure.MALFORMED.ordinal()];
+        }
+        if (!Arrays.equals(s.buffer, 0, headerLength, HEADER_BYTES, 0, HEADER_BYTES.length)
+                && !isOurHeader(s.buffer, headerLength)) {
+            return Result.UNHANDLED;
+        }
+        int signatureLength = token.length() - secondDot - 1;
+        // An unsigned token, jjwt refuses those as unsupported when a signed one is expected
+        if (signatureLength == 0) {
+            return Result.INVALID[ParsedJwt.Failure.UNSUPPORTED.ordinal()];
+        }
+        if (signatureLength != SIGNATURE_LENGTH
+                || JwtPreValidator.decode(token, secondDot + 1, signatureLength, s.signature) != SIGNATURE_BYTES
+                || !MessageDigest.isEqual(s.sign(token, secondDot), s.signature)) {
+            return Result.INVALID[ParsedJwt.Failure.BAD_SIGNATURE.ordinal()];
+        }
+
+        int payloadLength = secondDot - firstDot - 1;
+        byte[] payload = new byte[payloadLength * 3 / 4];
+        int length = JwtPreValidator.decode(token, firstDot + 1, payloadLength, payload);
+        Map<String, Object> claims = length < 0 ? null : ClaimsJson.read(payload, length);
+        if (claims == null) {
+            return Result.INVALID[ParsedJwt.Failure.MALFORMED.ordinal()];
+        }
+        if (claims.containsKey(NOT_BEFORE)) {
+            return Result.UNHANDLED;
+        }
+        Object expiration = claims.get(EXPIRATION);
+        if (expiration != null && !(expiration instanceof Number)) {
+            return Result.UNHANDLED;
+        }
+        // Like jjwt, a token is still valid during the millisecond it expires in
+        if (expiration != null && now > ((Number) expiration).longValue() * 1000) {
+            return Result.INVALID[ParsedJwt.Failure.EXPIRED.ordinal()];
+        }
+        return new Result(ParsedJwt.Failure.NONE, new DefaultClaims(claims));
+    }
+
+    // A header with other formatting than ours, such as from another jjwt version, is fine as long as it means the same
+    private static boolean isOurHeader(byte[] header, int length) {
+        Map<String, Object> fields = ClaimsJson.read(header, length);
+        return fields != null && fields.size() == 1 && "HS512".equals(fields.get("alg"));
+    }
+
+    private static final class Scratch {
+        private final Mac mac;
+        private final StringBuilder json = new StringBuilder(256);
+        private final byte[] expected = new byte[SIGNATURE_BYTES];
+        private final byte[] signature = new byte[SIGNATURE_BYTES];
+        private byte[] buffer = new byte[512];
+
+        private Scratch(Key key) {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot sign with " + ALGORITHM, e);
+            }
+        }
+
+        private byte[] buffer(int length) {
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            return buffer;
+        }
+
+        // The signature of the first length characters, which are base64url and dots so each one is a byte
+        private byte[] sign(CharSequence token, int length) {
+            byte[] bytes = buffer(length);
+            for (int i = 0; i < length; i++) {
+                bytes[i] = (byte) token.charAt(i);
+            }
+            mac.update(bytes, 0, length);
+            try {
+                mac.doFinal(expected, 0);
+            } catch (ShortBufferException e) {
+                throw new IllegalStateException(e);
+            }
+            return expected;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ This class logs problems with the tokens clients send us, but only up to a number of messages per minute.
+ Every request with a bad token used to be logged, so anyone sending us garbage could fill our disk and keep
+ our threads busy writing log lines. The messages from JwtUtil, AuthTokenFilter and AuthEntryPointJwt share
+ one budget. Once it is used up the rest are only counted, and when the next minute starts we log how many
+ were left out. The totals per reason are in the auth.jwt metrics.
+*/
+
+@Component
+public class InvalidTokenLogger {
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(InvalidTokenLogger.class);
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    @Value("${noroff.app.invalidTokenLogsPerMinute}")
+    private int logsPerMinute;
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicInteger logged = new AtomicInteger();
+    private final LongAdder suppressed = new LongAdder();
+
+    // Logging, there is no varargs version so nothing is allocated for a message we leave out
+    public void warn(Logger target, String format, Object argument) {
+        if (target.isWarnEnabled() && tryAcquire()) {
+            target.warn(format, argument);
+        }
+    }
+
+    public void warn(Logger target, String format, Object first, Object second) {
+        if (target.isWarnEnabled() && tryAcquire()) {
+            target.warn(format, first, second);
+        }
+    }
+
+    private boolean tryAcquire() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        // Only the thread that moves the window on resets the budget and reports what was left out
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            logged.set(0);
+            long dropped = suppressed.sumThenReset();
+            if (dropped > 0) {
+                logger.warn("Left out {} log messages about invalid tokens in the last minute", dropped);
+            }
+        }
+        if (logged.get() < logsPerMinute && logged.incrementAndGet() <= logsPerMinute) {
+            return true;
+        }
+        suppressed.increment();
+        return false;
+    }
+
+    public long getSuppressed() {
+        return suppressed.sum();
+    }
+}
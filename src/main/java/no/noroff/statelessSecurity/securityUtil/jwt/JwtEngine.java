@@ -0,0 +1,14 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+/*
+ What JwtUtil signs and verifies tokens with.
+ JJWT uses the jjwt library for everything.
+ NATIVE uses Hs512Codec for tokens signed with the shared secret, which skips jjwt's JSON mapper and exceptions.
+ It only applies while we sign with HS512, and tokens it does not recognise as ours still go through jjwt.
+ Both produce the same tokens, so instances with different engines accept each other's tokens.
+*/
+
+public enum JwtEngine {
+    JJWT,
+    NATIVE
+}
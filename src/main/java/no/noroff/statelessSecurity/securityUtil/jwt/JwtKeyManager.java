@@ -0,0 +1,403 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.impl.TextCodec;
+import no.noroff.statelessSecurity.models.domain.JwtSigningKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ This class owns the keys our tokens are signed and verified with.
+ With HS512 every token is signed with the shared secret from application.properties, like before, and there
+ is nothing to publish or rotate. With RS256 or ES256 we sign with a private key that never leaves this
+ service, and publish the public keys at /.well-known/jwks.json so other services can verify our tokens
+ themselves instead of calling us or sharing our secret.
+
+ Asymmetric keys are identified by the kid header of the token, and are rotated on a schedule:
+    - The next key is published a full rotation before we sign with it, so services that cached the
+      key set have it by the time tokens signed with it show up
+    - The current key signs every new token
+    - Retired keys keep verifying until the last token signed with them has expired, then they are removed
+ Tokens signed with the shared secret before switching to an asymmetric algorithm have no kid, they are
+ accepted until they expire in the same way.
+
+ The key pairs live in a JwtKeyStore, the database every instance shares, so all instances sign with the
+ same keys, verify each other's tokens and publish the same key set, and a restart keeps them.
+ Rotations are fixed slots of time rather than counted from startup, so every instance agrees on which key
+ signs now: whichever instance first needs the key of a slot generates and stores it, the others load it.
+ The private keys are stored encrypted with a key derived from jwtSecret, which every instance already shares.
+ RS256 and ES256 refuse to start without a key store, since keys kept in memory would differ per instance
+ and be lost on restart.
+*/
+
+@Component
+public class JwtKeyManager {
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyManager.class);
+
+    // The kid we store the shared secret under, tokens signed with it do not have one
+    private static final String NO_KID = "";
+
+    // How often we check the key store for a new slot, which is also how long a key may sign past its slot
+    private static final long KEY_REFRESH_MS = 60000;
+
+    private static final int IV_LENGTH = 12;
+
+    @Autowired
+    private JwtKeyStore keyStore;
+
+    @Value("${noroff.app.jwtSecret}")
+    private String jwtSecret;
+    @Value("${noroff.app.jwtExpirationMs}")
+    private int jwtExpirationMs;
+    @Value("${noroff.app.jwtAlgorithm}")
+    private SignatureAlgorithm algorithm;
+    @Value("${noroff.app.jwtKeyRotationMs}")
+    private long keyRotationMs;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private JwtKey secret;
+    private SecretKeySpec storageKey;
+
+    /*
+     Refreshing replaces these rather than changing them, so request threads always see a complete set of keys
+     without locking. Only refresh writes them, and it is synchronized.
+    */
+    private volatile JwtKey signingKey;
+    private volatile Map<String, JwtKey> verificationKeys = Map.of();
+    private volatile List<Map<String, Object>> jwks = List.of();
+
+    @PostConstruct
+    public void init() {
+        byte[] secretBytes = TextCodec.BASE64.decode(jwtSecret);
+        secret = new JwtKey(null, SignatureAlgorithm.HS512,
+                new SecretKeySpec(secretBytes, SignatureAlgorithm.HS512.getJcaName()), null);
+        if (algorithm == SignatureAlgorithm.HS512) {
+            signingKey = secret;
+            publish(List.of(secret));
+            return;
+        }
+        if (algorithm != SignatureAlgorithm.RS256 && algorithm != SignatureAlgorithm.ES256) {
+            throw new IllegalStateException("Unsupported JWT algorithm " + algorithm + ", use HS512, RS256 or ES256");
+        }
+        if (keyStore == null) {
+            throw new IllegalStateException("JWT algorithm " + algorithm + " needs a JwtKeyStore, keys kept in memory"
+                    + " would differ per instance and be lost on restart");
+        }
+        try {
+            storageKey = new SecretKeySpec(MessageDigest.getInstance("SHA-256").digest(secretBytes), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not derive the JWT key storage key", e);
+        }
+        // Tokens from before the switch keep working until they would have expired anyway
+        long now = System.currentTimeMillis();
+        secret.retire(now);
+        refresh(now);
+    }
+
+    // Scheduling
+
+    @Scheduled(fixedDelay = KEY_REFRESH_MS)
+    public void refresh() {
+        refresh(System.currentTimeMillis());
+    }
+
+    /*
+     Makes sure the keys of the current and the next slot are stored, then loads every key still needed:
+     the current one signs, the next one is published ahead, and older ones verify until their tokens expire.
+     An instance may keep signing with a key for up to KEY_REFRESH_MS after its slot ends, so they are kept
+     that much longer.
+    */
+    synchronized void refresh(long now) {
+        if (algorithm == SignatureAlgorithm.HS512) {
+            return;
+        }
+        long slot = now / keyRotationMs;
+        List<JwtSigningKey> stored = keyStore.findKeys(algorithm.getValue());
+        if (!hasSlot(stored, slot) || !hasSlot(stored, slot + 1)) {
+            for (long missing = slot; missing <= slot + 1; missing++) {
+                if (!hasSlot(stored, missing)) {
+                    keyStore.insertKey(generateKey(missing));
+                }
+            }
+            // Whether we stored them or another instance beat us to it, the stored keys are the ones to use
+            stored = keyStore.findKeys(algorithm.getValue());
+        }
+
+        Map<String, JwtKey> known = verificationKeys;
+        List<JwtKey> keys = new ArrayList<>(stored.size() + 1);
+        JwtKey current = null;
+        long oldestKept = Long.MAX_VALUE;
+        boolean expired = false;
+        for (JwtSigningKey storedKey : stored) {
+            long retiredAt = storedKey.getSlot() < slot ? (storedKey.getSlot() + 1) * keyRotationMs : 0;
+            if (retiredAt != 0 && now - retiredAt > jwtExpirationMs + KEY_REFRESH_MS) {
+                expired = true;
+                continue;
+            }
+            JwtKey key = known.get(storedKey.getKid());
+            if (key == null) {
+                key = decode(storedKey);
+            }
+            key.retire(retiredAt);
+            if (storedKey.getSlot() == slot) {
+                current = key;
+            }
+            oldestKept = Math.min(oldestKept, storedKey.getSlot());
+            keys.add(key);
+        }
+        if (current == null) {
+            throw new IllegalStateException("No " + algorithm + " key stored for the current slot " + slot);
+        }
+        if (expired) {
+            keyStore.deleteKeysBefore(algorithm.getValue(), oldestKept);
+        }
+        // Newest first
+        Collections.reverse(keys);
+        if (now - secret.getRetiredAt() <= jwtExpirationMs) {
+            keys.add(secret);
+        }
+
+        JwtKey previous = signingKey;
+        signingKey = current;
+        publish(keys);
+        if (previous != current) {
+            logger.info("Signing tokens with {} key {}", algorithm, current.getKid());
+        }
+    }
+
+    private static boolean hasSlot(List<JwtSigningKey> keys, long slot) {
+        for (JwtSigningKey key : keys) {
+            if (key.getSlot() == slot) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Storage
+
+    private JwtSigningKey generateKey(long slot) {
+        try {
+            KeyPairGenerator generator;
+            if (algorithm == SignatureAlgorithm.RS256) {
+                generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(2048, random);
+            } else {
+                generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec("secp256r1"), random);
+            }
+            KeyPair keyPair = generator.generateKeyPair();
+            byte[] kid = new byte[12];
+            random.nextBytes(kid);
+            return new JwtSigningKey(algorithm.getValue(), slot,
+                    Base64.getUrlEncoder().withoutPadding().encodeToString(kid),
+                    encrypt(keyPair.getPrivate().getEncoded()), keyPair.getPublic().getEncoded());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not generate a " + algorithm + " key", e);
+        }
+    }
+
+    private JwtKey decode(JwtSigningKey stored) {
+        byte[] privateKey;
+        try {
+            privateKey = decrypt(stored.getPrivateKey());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not decrypt JWT key " + stored.getKid()
+                    + ", was noroff.app.jwtSecret changed since it was stored?", e);
+        }
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance(algorithm == SignatureAlgorithm.RS256 ? "RSA" : "EC");
+            PrivateKey signing = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(privateKey));
+            PublicKey verifying = keyFactory.generatePublic(new X509EncodedKeySpec(stored.getPublicKey()));
+            return new JwtKey(stored.getKid(), algorithm, signing, verifying);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not read stored JWT key " + stored.getKid(), e);
+        }
+    }
+
+    // AES-GCM, the random IV goes in front of the ciphertext
+    private byte[] encrypt(byte[] plain) throws GeneralSecurityException {
+        byte[] iv = new byte[IV_LENGTH];
+        random.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, storageKey, new GCMParameterSpec(128, iv));
+        byte[] encrypted = cipher.doFinal(plain);
+        byte[] stored = new byte[IV_LENGTH + encrypted.length];
+        System.arraycopy(iv, 0, stored, 0, IV_LENGTH);
+        System.arraycopy(encrypted, 0, stored, IV_LENGTH, encrypted.length);
+        return stored;
+    }
+
+    private byte[] decrypt(byte[] stored) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, storageKey, new GCMParameterSpec(128, stored, 0, IV_LENGTH));
+        return cipher.doFinal(stored, IV_LENGTH, stored.length - IV_LENGTH);
+    }
+
+    private void publish(List<JwtKey> keys) {
+        Map<String, JwtKey> byKid = new HashMap<>();
+        List<Map<String, Object>> published = new ArrayList<>();
+        for (JwtKey key : keys) {
+            byKid.put(key.getKid() == null ? NO_KID : key.getKid(), key);
+            if (key.getPublicKey() != null) {
+                published.add(toJwk(key));
+            }
+        }
+        verificationKeys = Collections.unmodifiableMap(byKid);
+        jwks = Collections.unmodifiableList(published);
+    }
+
+    // The public key in the JSON Web Key format of RFC 7517 and RFC 7518
+    private static Map<String, Object> toJwk(JwtKey key) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        PublicKey publicKey = key.getPublicKey();
+        if (publicKey instanceof RSAPublicKey) {
+            RSAPublicKey rsaKey = (RSAPublicKey) publicKey;
+            jwk.put("kty", "RSA");
+            jwk.put("n", base64Url(rsaKey.getModulus(), 0));
+            jwk.put("e", base64Url(rsaKey.getPublicExponent(), 0));
+        } else {
+            ECPublicKey ecKey = (ECPublicKey) publicKey;
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("x", base64Url(ecKey.getW().getAffineX(), 32));
+            jwk.put("y", base64Url(ecKey.getW().getAffineY(), 32));
+        }
+        jwk.put("kid", key.getKid());
+        jwk.put("use", "sig");
+        jwk.put("alg", key.getAlgorithm().getValue());
+        return Collections.unmodifiableMap(jwk);
+    }
+
+    // The unsigned big-endian bytes of the number, padded to the given length when it is shorter
+    private static String base64Url(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (bytes.length < length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            bytes = padded;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    // Lookup
+
+    public JwtKey getSigningKey() {
+        return signingKey;
+    }
+
+    /*
+     The key to verify a token with, found by the kid in its header.
+     The token must also name the algorithm that key belongs to, otherwise a token could for example claim
+     HS256 and be checked with one of our public keys as the secret.
+    */
+    public Key getVerificationKey(String kid, String algorithm) {
+        JwtKey key = verificationKeys.get(kid == null ? NO_KID : kid);
+        if (key == null) {
+            throw new SignatureException("No JWT signing key with id " + kid);
+        }
+        if (!key.getAlgorithm().getValue().equals(algorithm)) {
+            throw new UnsupportedJwtException("JWT algorithm " + algorithm + " does not match its key");
+        }
+        return key.getPublicKey() != null ? key.getPublicKey() : key.getSigningKey();
+    }
+
+    // The algorithms a token may name in its header
+    public Set<String> getAlgorithms() {
+        return algorithm == SignatureAlgorithm.HS512
+                ? Set.of(algorithm.getValue())
+                : Set.of(algorithm.getValue(), SignatureAlgorithm.HS512.getValue());
+    }
+
+    // The public keys in JSON Web Key format, empty when we sign with the shared secret
+    public List<Map<String, Object>> getJwks() {
+        return jwks;
+    }
+
+    public SignatureAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    // A key we sign or verify tokens with
+    public static final class JwtKey {
+        private final String kid;
+        private final SignatureAlgorithm algorithm;
+        private final Key signingKey;
+        private final PublicKey publicKey;
+        private volatile long retiredAt;
+
+        private JwtKey(String kid, SignatureAlgorithm algorithm, Key signingKey, PublicKey publicKey) {
+            this.kid = kid;
+            this.algorithm = algorithm;
+            this.signingKey = signingKey;
+            this.publicKey = publicKey;
+        }
+
+        private void retire(long now) {
+            retiredAt = now;
+        }
+
+        // Null for the shared secret
+        public String getKid() {
+            return kid;
+        }
+
+        public SignatureAlgorithm getAlgorithm() {
+            return algorithm;
+        }
+
+        public Key getSigningKey() {
+            return signingKey;
+        }
+
+        // Null for the shared secret, which is never published
+        public PublicKey getPublicKey() {
+            return publicKey;
+        }
+
+        // When we stopped signing with this key, 0 while it is still in use
+        public long getRetiredAt() {
+            return retiredAt;
+        }
+    }
+}
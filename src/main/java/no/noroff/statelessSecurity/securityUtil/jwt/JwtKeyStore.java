@@ -0,0 +1,22 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import no.noroff.statelessSecurity.models.domain.JwtSigningKey;
+
+import java.util.List;
+
+/*
+ Where JwtKeyManager keeps the RS256 and ES256 key pairs, so every instance and every restart signs with the
+ same keys and the published key set is the same wherever it is fetched.
+ Each rotation slot holds at most one key per algorithm, whoever stores a key for a slot first wins.
+*/
+public interface JwtKeyStore {
+
+    // Every stored key of the algorithm, read from the primary so a key another instance just added is seen
+    List<JwtSigningKey> findKeys(String algorithm);
+
+    // Stores the key unless its slot already has one, false when another instance got there first
+    boolean insertKey(JwtSigningKey key);
+
+    // Removes the keys of the slots before the given one
+    void deleteKeysBefore(String algorithm, long slot);
+}
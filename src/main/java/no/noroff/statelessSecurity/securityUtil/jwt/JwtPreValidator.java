@@ -0,0 +1,196 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/*
+ This class rejects tokens that cannot possibly be valid, before we spend any time on them.
+ Verifying a token means hashing it for the cache, computing its signature and parsing its JSON, and jjwt
+ reports every problem by throwing an exception. A flood of garbage bearer tokens would pay all of that.
+ These checks only look at the characters of the token:
+    - It is no longer than the longest token we could have issued
+    - It has three non-empty parts separated by dots, an unsigned token has no signature and is refused
+    - Every other character is in the base64url alphabet
+    - Its header names one of the algorithms we sign with, this also refuses the "none" algorithm
+ A token that passes can still be invalid, it is then rejected by the signature check as before.
+ The checks run on the token where it is, inside the Authorization header, and allocate nothing.
+*/
+
+public class JwtPreValidator {
+    // The reasons a token is rejected here, and how they are reported in ParsedJwt
+    public enum Rejection {
+        EMPTY(ParsedJwt.Failure.EMPTY),
+        TOO_LONG(ParsedJwt.Failure.MALFORMED),
+        STRUCTURE(ParsedJwt.Failure.MALFORMED),
+        ALPHABET(ParsedJwt.Failure.MALFORMED),
+        HEADER(ParsedJwt.Failure.MALFORMED),
+        ALGORITHM(ParsedJwt.Failure.UNSUPPORTED);
+
+        private final ParsedJwt.Failure failure;
+
+        Rejection(ParsedJwt.Failure failure) {
+            this.failure = failure;
+        }
+
+        public ParsedJwt.Failure getFailure() {
+            return failure;
+        }
+    }
+
+    // Fields
+
+    // Our headers are a few dozen characters, so anything much longer is not ours and is not worth decoding
+    private static final int MAX_HEADER_LENGTH = 256;
+
+    private static final byte[] ALG = {'"', 'a', 'l', 'g', '"'};
+
+    // The value of each base64url character, -1 for characters outside the alphabet
+    private static final int[] BASE64_URL = new int[128];
+
+    static {
+        Arrays.fill(BASE64_URL, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_URL[alphabet.charAt(i)] = i;
+        }
+    }
+
+    // Every thread decodes headers into its own buffer, so checking a token allocates nothing
+    private static final ThreadLocal<byte[]> HEADER = ThreadLocal.withInitial(() -> new byte[MAX_HEADER_LENGTH * 3 / 4]);
+
+    private final int maxLength;
+    private final byte[][] algorithms;
+
+    // Constructors
+    public JwtPreValidator(int maxLength, Set<String> algorithms) {
+        this.maxLength = maxLength;
+        this.algorithms = new byte[algorithms.size()][];
+        int i = 0;
+        for (String algorithm : algorithms) {
+            this.algorithms[i++] = algorithm.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    // Returns why the token was rejected, or null when it may be verified
+    public Rejection check(String token) {
+        return token == null ? Rejection.EMPTY : check(token, 0);
+    }
+
+    // The same for the token that starts at offset in source, such as the bearer token in an Authorization header
+    public Rejection check(String source, int offset) {
+        int length = source.length() - offset;
+        if (length <= 0) {
+            return Rejection.EMPTY;
+        }
+        if (length > maxLength) {
+            return Rejection.TOO_LONG;
+        }
+        int firstDot = -1;
+        int secondDot = -1;
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(offset + i);
+            if (c == '.') {
+                if (firstDot < 0) {
+                    firstDot = i;
+                } else if (secondDot < 0) {
+                    secondDot = i;
+                } else {
+                    return Rejection.STRUCTURE;
+                }
+            } else if (!isBase64Url(c)) {
+                return Rejection.ALPHABET;
+            }
+        }
+        if (firstDot <= 0 || secondDot <= firstDot + 1 || secondDot == length - 1) {
+            return Rejection.STRUCTURE;
+        }
+        if (firstDot > MAX_HEADER_LENGTH) {
+            return Rejection.HEADER;
+        }
+        return checkAlgorithm(source, offset, firstDot);
+    }
+
+    private static boolean isBase64Url(char c) {
+        return c < 128 && BASE64_URL[c] >= 0;
+    }
+
+    /*
+     Finds the value of "alg" in the decoded header without a full JSON parser.
+     Headers with escapes or unusual formatting are rejected, the ones we issue look like {"alg":"HS512"}.
+    */
+    private Rejection checkAlgorithm(String source, int offset, int encodedLength) {
+        byte[] header = HEADER.get();
+        int length = decode(source, offset, encodedLength, header);
+        if (length < 0) {
+            return Rejection.HEADER;
+        }
+        int key = indexOf(header, length, ALG, 0);
+        if (key < 0) {
+            return Rejection.HEADER;
+        }
+        int colon = skipWhitespace(header, length, key + ALG.length);
+        if (colon >= length || header[colon] != ':') {
+            return Rejection.HEADER;
+        }
+        int open = skipWhitespace(header, length, colon + 1);
+        if (open >= length || header[open] != '"') {
+            return Rejection.HEADER;
+        }
+        int close = open + 1;
+        while (close < length && header[close] != '"') {
+            close++;
+        }
+        if (close >= length) {
+            return Rejection.HEADER;
+        }
+        for (byte[] algorithm : algorithms) {
+            if (Arrays.equals(header, open + 1, close, algorithm, 0, algorithm.length)) {
+                return null;
+            }
+        }
+        return Rejection.ALGORITHM;
+    }
+
+    /*
+     Decodes unpadded base64url into the buffer, returns the number of bytes or -1 when it is not valid base64url.
+     The buffer must hold length * 3 / 4 bytes. Hs512Codec decodes the parts of a token with this as well.
+    */
+    static int decode(String source, int offset, int length, byte[] out) {
+        if (length % 4 == 1) {
+            return -1;
+        }
+        int written = 0;
+        int bits = 0;
+        int buffered = 0;
+        for (int i = 0; i < length; i++) {
+            char c = source.charAt(offset + i);
+            if (!isBase64Url(c)) {
+                return -1;
+            }
+            bits = (bits << 6) | BASE64_URL[c];
+            buffered += 6;
+            if (buffered >= 8) {
+                buffered -= 8;
+                out[written++] = (byte) (bits >> buffered);
+            }
+        }
+        return written;
+    }
+
+    private static int indexOf(byte[] bytes, int length, byte[] target, int from) {
+        for (int i = from; i <= length - target.length; i++) {
+            if (Arrays.equals(bytes, i, i + target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(byte[] bytes, int length, int index) {
+        while (index < length && Character.isWhitespace(bytes[index])) {
+            index++;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,217 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/*
+ This class remembers tokens we have already verified.
+ Clients send the same token on every request for as long as it lives, so verifying the signature and
+ parsing the claims each time is wasted work. We key the cache on a SHA-256 digest of the whole token,
+ which is much cheaper than the HMAC and JSON parsing, and keeps the keys small.
+ Only valid tokens are stored, and each entry is evicted at the token's own expiry, or earlier when
+ the cache grows past its maximum size.
+ The digest is taken straight from the Authorization header through buffers each thread keeps, so a lookup
+ does not copy the token, and only a token that has to be verified is cut out of the header.
+ As a MeterBinder its hits, misses, evictions and size are published with our other metrics as the
+ jwt.tokens cache.
+*/
+
+@Component
+public class JwtTokenCache implements MeterBinder {
+    // Fields
+    @Value("${noroff.app.jwtCacheEnabled}")
+    private boolean enabled;
+    @Value("${noroff.app.jwtCacheMaxSize}")
+    private long maxSize;
+
+    private Cache<TokenDigest, ParsedJwt> cache;
+
+    // MessageDigest is not thread safe, so every thread gets its own instance, together with its buffers
+    private static final ThreadLocal<DigestScratch> SCRATCH = ThreadLocal.withInitial(DigestScratch::new);
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+    }
+
+    // Overrides
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "jwt.tokens");
+    }
+
+    // Returns the cached result for the token, or verifies it with the given function and caches it if valid.
+    public ParsedJwt get(String token, Function<String, ParsedJwt> verifier) {
+        return get(token, 0, verifier);
+    }
+
+    // The same for the token that starts at offset in source, the verifier is given the token alone
+    public ParsedJwt get(String source, int offset, Function<String, ParsedJwt> verifier) {
+        if (!enabled) {
+            return verifier.apply(token(source, offset));
+        }
+        TokenDigest key = TokenDigest.of(source, offset);
+        ParsedJwt parsedJwt = cache.getIfPresent(key);
+        if (parsedJwt == null) {
+            parsedJwt = verifier.apply(token(source, offset));
+            if (isCacheable(parsedJwt)) {
+                cache.put(key, parsedJwt);
+            }
+        }
+        return parsedJwt;
+    }
+
+    /*
+     The two halves of get, for callers that verify on another thread than they look up on.
+     getIfPresent returns the cached result, or null when the token has to be verified.
+    */
+    public ParsedJwt getIfPresent(String source, int offset) {
+        return enabled ? cache.getIfPresent(TokenDigest.of(source, offset)) : null;
+    }
+
+    // Verifies the token with the given function and caches it if valid, without looking it up first
+    public ParsedJwt verify(String source, int offset, Function<String, ParsedJwt> verifier) {
+        ParsedJwt parsedJwt = verifier.apply(token(source, offset));
+        if (enabled && isCacheable(parsedJwt)) {
+            cache.put(TokenDigest.of(source, offset), parsedJwt);
+        }
+        return parsedJwt;
+    }
+
+    // Valid tokens without an expiry would never leave
+    private static boolean isCacheable(ParsedJwt parsedJwt) {
+        return parsedJwt.isValid() && parsedJwt.getExpirationMs() != ParsedJwt.NO_EXPIRATION;
+    }
+
+    // Removes a token from the cache, so the next request has to verify it again
+    public void invalidate(String token) {
+        cache.invalidate(TokenDigest.of(token, 0));
+    }
+
+    // Statistics, these contain the hit, miss and eviction counts
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private static String token(String source, int offset) {
+        return offset == 0 ? source : source.substring(offset);
+    }
+
+    // Entries live until the token itself expires
+    private static class TokenExpiry implements Expiry<TokenDigest, ParsedJwt> {
+        @Override
+        public long expireAfterCreate(TokenDigest key, ParsedJwt value, long currentTime) {
+            long remainingMs = value.getExpirationMs() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(TokenDigest key, ParsedJwt value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(TokenDigest key, ParsedJwt value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /*
+     The cache key, the first 128 bits of the SHA-256 digest of the token.
+     That is plenty to make finding another token with the same key infeasible, and it fits in two longs.
+    */
+    private static final class TokenDigest {
+        private final long high;
+        private final long low;
+
+        private TokenDigest(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        static TokenDigest of(String source, int offset) {
+            byte[] digest = SCRATCH.get().digest(source, offset);
+            long high = 0;
+            long low = 0;
+            for (int i = 0; i < 8; i++) {
+                high = (high << 8) | (digest[i] & 0xff);
+                low = (low << 8) | (digest[i + 8] & 0xff);
+            }
+            return new TokenDigest(high, low);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (o == null || getClass() != o.getClass())
+                return false;
+            TokenDigest that = (TokenDigest) o;
+            return high == that.high && low == that.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (low ^ (low >>> 32));
+        }
+    }
+
+    // A thread's digest and the buffers it hashes from and into, reused for every token the thread looks up
+    private static final class DigestScratch {
+        private final MessageDigest sha256;
+        private final byte[] digest = new byte[32];
+        private byte[] chars = new byte[512];
+
+        private DigestScratch() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // Tokens only hold base64url characters and dots by now, so each char is one byte, as in US-ASCII
+        private byte[] digest(String source, int offset) {
+            int length = source.length() - offset;
+            if (chars.length < length) {
+                chars = new byte[Math.max(length, chars.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                chars[i] = (byte) source.charAt(offset + i);
+            }
+            sha256.update(chars, 0, length);
+            try {
+                sha256.digest(digest, 0, digest.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            return digest;
+        }
+    }
+}
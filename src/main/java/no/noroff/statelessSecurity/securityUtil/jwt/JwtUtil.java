@@ -1,24 +1,48 @@
 package no.noroff.statelessSecurity.securityUtil.jwt;
 
 import io.jsonwebtoken.*;
+import no.noroff.statelessSecurity.securityUtil.access.RoleAuthorities;
+import no.noroff.statelessSecurity.securityUtil.access.RoleAuthoritySet;
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
 import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
 
-import java.util.Date;
+import javax.annotation.PostConstruct;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /*
  This class serves as a utility for manipulating JWTs.
  We use a standard logger to log everything that goes wrong.
- This class can generate a token based on secrets we provide in application.properties,
- validate an existing token with our secret, and extract a username from a jwt.
+ This class can generate a token signed with the current key from JwtKeyManager,
+ validate an existing token with the key it names, and extract a username from a jwt.
+ The signing and verifying is done by jjwt, or by Hs512Codec when the JwtEngine is NATIVE.
+ Parsing is done once per token with parseJwtToken, which verifies the signature and hands back everything
+ in the token as a ParsedJwt, so there is no need to run the signature check again to read the claims.
+ Before any of that JwtPreValidator throws out tokens that cannot be ours, and problems are logged through
+ InvalidTokenLogger, which limits how many messages a stream of bad tokens can produce.
+ Every token gets a random id in its jti claim, so it can be revoked when its user logs out. Revocation is
+ checked on every parse, also when the token itself comes from the cache.
+ Every token also carries its user's id and token epoch. When an admin changes the user's roles or logs them
+ out everywhere the epoch goes up, and TokenEpochRegistry lets us reject the older tokens without a query.
 
- NOTE: If you decide to include roles here, you can extract them out in the same way as username is.
- This is true for any extra information. This can be done to save a trip to the database.
+ When the principal mode is TOKEN we also include the user's email and roles in the token.
+ They are extracted in the same way as username is, and saves a trip to the database on every request.
+ What our own claims are called, and how roles are written, is set by the ClaimProfile.
 */
 
 @Component
@@ -26,51 +50,314 @@ public class JwtUtil {
     // Fields
     private static final Logger logger = LoggerFactory.getLogger(JwtUtil.class);
 
+    // The roles claim holds role names without their ROLE_ prefix to keep the token short
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    // How the token is sent in the Authorization header
+    public static final String BEARER_PREFIX = "Bearer ";
+
     /*
      We store these values in our application.properties files.
      These would ideally be environment variables on a server, which is why we access them this way.
     */
-    @Value("${noroff.app.jwtSecret}")
-    private String jwtSecret;
     @Value("${noroff.app.jwtExpirationMs}")
     private int jwtExpirationMs;
+    @Value("${noroff.app.jwtPrincipalMode}")
+    private PrincipalMode principalMode;
+    @Value("${noroff.app.jwtMaxLength}")
+    private int jwtMaxLength;
+    @Value("${noroff.app.jwtClaimProfile}")
+    private ClaimProfile claimProfile;
+    @Value("${noroff.app.jwtEngine}")
+    private JwtEngine engine;
+
+    // Tokens we have already verified, so repeat requests with the same token skip the crypto
+    @Autowired
+    private JwtTokenCache tokenCache;
+
+    @Autowired
+    private AuthMetrics authMetrics;
+
+    @Autowired
+    private InvalidTokenLogger invalidTokenLogger;
+
+    @Autowired
+    private TokenRevocationStore revocationStore;
+
+    @Autowired
+    private TokenEpochRegistry tokenEpochRegistry;
+
+    // 128 random bits make a token id that will never be issued twice
+    private static final int TOKEN_ID_BYTES = 16;
+    private final SecureRandom random = new SecureRandom();
+
+    // The keys we sign with and verify with, see JwtKeyManager
+    @Autowired
+    private JwtKeyManager keyManager;
+
+    /*
+     The parser is built once at startup instead of on every call. It asks the key manager for the key
+     named by each token's kid header, and only reads its configuration while parsing, so one instance is
+     safely shared between request threads.
+    */
+    private JwtParser jwtParser;
+    private JwtPreValidator preValidator;
+    // Null unless the engine is NATIVE and we sign with the shared secret, see JwtEngine
+    private Hs512Codec hs512Codec;
+
+    // Made once, a method reference written at the call would be a new object on every request
+    private final Function<String, ParsedJwt> verifier = this::verifyJwtToken;
+
+    @PostConstruct
+    public void init() {
+        jwtParser = Jwts.parser().setSigningKeyResolver(new SigningKeyResolverAdapter() {
+            @Override
+            public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                return keyManager.getVerificationKey(header.getKeyId(), header.getAlgorithm());
+            }
+        });
+        // We only accept tokens signed with an algorithm we sign with ourselves
+        preValidator = new JwtPreValidator(jwtMaxLength, keyManager.getAlgorithms());
+        /*
+         The shared secret only stays trusted for as long as we sign with it, after switching to an asymmetric
+         algorithm its old tokens are accepted until JwtKeyManager retires it, and only jjwt asks it about that.
+        */
+        if (engine == JwtEngine.NATIVE) {
+            if (keyManager.getAlgorithm() == SignatureAlgorithm.HS512) {
+                hs512Codec = new Hs512Codec(keyManager.getSigningKey().getSigningKey());
+            } else {
+                logger.warn("The NATIVE JWT engine only signs with HS512, using jjwt for {}", keyManager.getAlgorithm());
+            }
+        }
+    }
 
     // Here we make use of the standard JWT library for java called io.jsonwebtoken.
     public String generateJwtToken(Authentication authentication) {
+        long start = System.nanoTime();
         // Here we access the current user through Spring Security.
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
-        // We use the builder pattern to create a JWT
-        return Jwts.builder()
-                // We set our subject as our user's username - this who the token is for
-                .setSubject((userPrincipal.getUsername()))
-                // We set the issued at date to now
-                .setIssuedAt(new Date())
-                // Expiration date is determined by our jwtExpirationMs value
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                // And we finally sign the token with our secret, this secret is important for validation.
-                .signWith(SignatureAlgorithm.HS512, jwtSecret)
-                .compact();
+        /*
+         The claims are collected in the order they are written, both engines write them the same way.
+         Dates are in seconds since the epoch, which is how JWTs carry them.
+        */
+        long now = System.currentTimeMillis();
+        Map<String, Object> claims = new LinkedHashMap<>();
+        // We set our subject as our user's username - this who the token is for
+        claims.put(Claims.SUBJECT, userPrincipal.getUsername());
+        // A unique id for this token, so we can revoke it
+        claims.put(Claims.ID, newTokenId());
+        // We set the issued at date to now
+        claims.put(Claims.ISSUED_AT, now / 1000);
+        // Expiration date is determined by our jwtExpirationMs value
+        claims.put(Claims.EXPIRATION, (now + jwtExpirationMs) / 1000);
+        // Who the token is for and which of their epochs, so it can be made stale without the database
+        claims.put(claimProfile.getId(), userPrincipal.getId());
+        claims.put(claimProfile.getEpoch(), userPrincipal.getTokenEpoch());
+        // In TOKEN mode the token carries everything needed to rebuild the user without the database
+        if (principalMode == PrincipalMode.TOKEN) {
+            claims.put(claimProfile.getEmail(), userPrincipal.getEmail());
+            claims.put(claimProfile.getRoles(), rolesClaim(userPrincipal));
+        }
+        /*
+         And we finally sign the token with our current key, this key is important for validation.
+         Asymmetric keys are named in the kid header, so verifiers know which public key to check it with.
+        */
+        String jwt;
+        if (hs512Codec != null) {
+            jwt = hs512Codec.encode(claims);
+        } else {
+            // We use the builder pattern to create a JWT
+            JwtBuilder builder = Jwts.builder().setClaims(claims);
+            JwtKeyManager.JwtKey signingKey = keyManager.getSigningKey();
+            if (signingKey.getKid() != null) {
+                builder.setHeaderParam(JwsHeader.KEY_ID, signingKey.getKid());
+            }
+            jwt = builder.signWith(signingKey.getAlgorithm(), signingKey.getSigningKey()).compact();
+        }
+        authMetrics.recordSign(start);
+        return jwt;
     }
 
-    public String getUserNameFromJwtToken(String jwt) {
-        return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(jwt).getBody().getSubject();
+    // Whether an Authorization header carries a bearer token, compared in place so the header is not copied
+    public static boolean hasBearerToken(String header) {
+        return header != null && header.length() > BEARER_PREFIX.length()
+                && header.regionMatches(0, BEARER_PREFIX, 0, BEARER_PREFIX.length());
     }
 
-    public boolean validateJwtToken(String authToken) {
+    // Verifies the token once and returns its claims, or the reason it was rejected.
+    public ParsedJwt parseJwtToken(String authToken) {
+        return parseJwtToken(authToken, 0);
+    }
+
+    /*
+     The same for a token that starts at offset in source, such as the bearer token in an Authorization header.
+     The token is only copied out of the header when its signature has to be verified, a token from the cache
+     is checked and looked up where it is.
+    */
+    public ParsedJwt parseJwtToken(String source, int offset) {
+        ParsedJwt rejected = preValidate(source, offset);
+        if (rejected != null) {
+            return rejected;
+        }
+        return checkCurrent(tokenCache.get(source, offset, verifier));
+    }
+
+    /*
+     The same, without checking a signature: the result for a token that is rejected before verification or
+     found in the cache, and null when it has to be verified. ReactiveAuthTokenFilter answers these on the
+     event loop and hands the rest to verifyJwtToken on another thread.
+    */
+    public ParsedJwt parseCachedJwtToken(String source, int offset) {
+        ParsedJwt rejected = preValidate(source, offset);
+        if (rejected != null) {
+            return rejected;
+        }
+        ParsedJwt parsedJwt = tokenCache.getIfPresent(source, offset);
+        return parsedJwt != null ? checkCurrent(parsedJwt) : null;
+    }
+
+    // Verifies a token that parseCachedJwtToken returned null for
+    public ParsedJwt verifyJwtToken(String source, int offset) {
+        return checkCurrent(tokenCache.verify(source, offset, verifier));
+    }
+
+    // Garbage is turned away before we hash it for the cache lookup, let alone check its signature
+    private ParsedJwt preValidate(String source, int offset) {
+        JwtPreValidator.Rejection rejection = preValidator.check(source, offset);
+        if (rejection == null) {
+            return null;
+        }
+        authMetrics.recordPreValidationRejected(rejection);
+        invalidTokenLogger.warn(logger, "JWT rejected before verification: {}", rejection);
+        return ParsedJwt.invalid(rejection.getFailure());
+    }
+
+    private ParsedJwt checkCurrent(ParsedJwt parsedJwt) {
+        /*
+         A token from before its user's last role change or forced logout is stale.
+         Only older epochs are refused, another instance may already have issued tokens with a newer one we have
+         not loaded yet.
+        */
+        if (parsedJwt.isValid() && parsedJwt.getTokenEpoch() != ParsedJwt.NO_EPOCH
+                && parsedJwt.getTokenEpoch() < tokenEpochRegistry.get(parsedJwt.getUserId())) {
+            return ParsedJwt.invalid(ParsedJwt.Failure.STALE);
+        }
+        // Only tokens with an id can have been revoked
+        if (parsedJwt.isValid() && parsedJwt.getId() != null
+                && revocationStore.isRevoked(parsedJwt.getId(), parsedJwt.getExpirationMs())) {
+            return ParsedJwt.invalid(ParsedJwt.Failure.REVOKED);
+        }
+        return parsedJwt;
+    }
+
+    // Revokes a valid token, returns false when the token is invalid or too old to have an id
+    public boolean revokeJwtToken(String authToken) {
+        ParsedJwt parsedJwt = parseJwtToken(authToken);
+        if (!parsedJwt.isValid() || parsedJwt.getId() == null) {
+            return false;
+        }
+        revocationStore.revoke(parsedJwt.getId(), parsedJwt.getExpirationMs());
+        tokenCache.invalidate(authToken);
+        return true;
+    }
+
+    private String newTokenId() {
+        byte[] id = new byte[TOKEN_ID_BYTES];
+        random.nextBytes(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id);
+    }
+
+    // Only tokens missing from the cache get here, so the verify timer counts the real signature checks
+    private ParsedJwt verifyJwtToken(String authToken) {
+        long start = System.nanoTime();
+        ParsedJwt parsedJwt = decodeJwtToken(authToken);
+        authMetrics.recordVerify(parsedJwt.getFailure(), start);
+        return parsedJwt;
+    }
+
+    private ParsedJwt decodeJwtToken(String authToken) {
+        if (hs512Codec != null) {
+            Hs512Codec.Result result = hs512Codec.decode(authToken);
+            if (result.isValid()) {
+                Claims claims = result.getClaims();
+                return ParsedJwt.valid(claims, principalMode == PrincipalMode.TOKEN ? buildUserDetails(claims) : null);
+            }
+            if (!result.isUnhandled()) {
+                invalidTokenLogger.warn(logger, "Invalid JWT token: {}", result.getFailure());
+                return ParsedJwt.invalid(result.getFailure());
+            }
+        }
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-            return true;
+            Claims claims = jwtParser.parseClaimsJws(authToken).getBody();
+            return ParsedJwt.valid(claims, principalMode == PrincipalMode.TOKEN ? buildUserDetails(claims) : null);
         } catch (SignatureException e) {
-            logger.error("Invalid JWT signature: {}", e.getMessage());
+            invalidTokenLogger.warn(logger, "Invalid JWT signature: {}", e.getMessage());
+            return ParsedJwt.invalid(ParsedJwt.Failure.BAD_SIGNATURE);
         } catch (MalformedJwtException e) {
-            logger.error("Invalid JWT token: {}", e.getMessage());
+            invalidTokenLogger.warn(logger, "Invalid JWT token: {}", e.getMessage());
+            return ParsedJwt.invalid(ParsedJwt.Failure.MALFORMED);
         } catch (ExpiredJwtException e) {
-            logger.error("JWT token is expired: {}", e.getMessage());
+            invalidTokenLogger.warn(logger, "JWT token is expired: {}", e.getMessage());
+            return ParsedJwt.invalid(ParsedJwt.Failure.EXPIRED);
         } catch (UnsupportedJwtException e) {
-            logger.error("JWT token is unsupported: {}", e.getMessage());
+            invalidTokenLogger.warn(logger, "JWT token is unsupported: {}", e.getMessage());
+            return ParsedJwt.invalid(ParsedJwt.Failure.UNSUPPORTED);
         } catch (IllegalArgumentException e) {
-            logger.error("JWT claims string is empty: {}", e.getMessage());
+            invalidTokenLogger.warn(logger, "JWT claims string is empty: {}", e.getMessage());
+            return ParsedJwt.invalid(ParsedJwt.Failure.EMPTY);
+        }
+    }
+
+    // The user's roles as the claim profile writes them, see ClaimProfile
+    private Object rolesClaim(UserDetailsImpl userPrincipal) {
+        if (claimProfile == ClaimProfile.COMPACT) {
+            return userPrincipal.getRoleMask();
         }
-        return false;
+        List<String> roles = new ArrayList<>();
+        for (GrantedAuthority authority : userPrincipal.getAuthorities()) {
+            roles.add(authority.getAuthority().substring(ROLE_PREFIX.length()));
+        }
+        return roles;
+    }
+
+    /*
+     Rebuilds the user from the claims we added in generateJwtToken, there is no password as we never need it here.
+     Tokens issued before TOKEN mode was switched on do not have these claims, those users are loaded from the database.
+     The claims are read in either profile, whichever one we issue now.
+    */
+    private UserDetailsImpl buildUserDetails(Claims claims) {
+        Number id = ClaimProfile.read(claims, ClaimProfile::getId, Number.class);
+        Collection<GrantedAuthority> authorities = readRoles(claims);
+        if (id == null || authorities == null) {
+            return null;
+        }
+        Number tokenEpoch = ClaimProfile.read(claims, ClaimProfile::getEpoch, Number.class);
+        return new UserDetailsImpl(id.longValue(), claims.getSubject(),
+                ClaimProfile.read(claims, ClaimProfile::getEmail, String.class),
+                null, authorities, tokenEpoch == null ? 0 : tokenEpoch.intValue());
+    }
+
+    private static Collection<GrantedAuthority> readRoles(Claims claims) {
+        Object roles = ClaimProfile.read(claims, ClaimProfile::getRoles, Object.class);
+        if (roles instanceof Number) {
+            return RoleAuthoritySet.of(((Number) roles).intValue());
+        }
+        if (!(roles instanceof List)) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(((List<?>) roles).size());
+        for (Object role : (List<?>) roles) {
+            authorities.add(RoleAuthorities.ofClaim(String.valueOf(role)));
+        }
+        return authorities;
+    }
+
+    // Convenience methods, each of these verifies the token. Use parseJwtToken when more than one value is needed.
+    public String getUserNameFromJwtToken(String jwt) {
+        return parseJwtToken(jwt).getSubject();
+    }
+
+    public boolean validateJwtToken(String authToken) {
+        return parseJwtToken(authToken).isValid();
     }
 }
@@ -0,0 +1,136 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import io.jsonwebtoken.Claims;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+
+import java.util.Date;
+
+/*
+ This class is the result of parsing a JWT through JwtUtil.
+ A token is decoded and has its signature verified exactly once, after which everything we need
+ from it is available here. Instead of throwing, an invalid token gives us a Failure describing
+ what was wrong with it, so callers can decide what to do without catching exceptions.
+ In TOKEN principal mode the user built from the claims is kept here as well.
+ The user id, token epoch and expiry are read out of the claims up front as primitives, because every request
+ compares them with TokenEpochRegistry and the revocation store, and reading claims means a map lookup and a
+ boxed number, or for the expiry a new Date each time.
+ Valid results are shared between requests through the JwtTokenCache, so the claims must only be read.
+*/
+
+public final class ParsedJwt {
+    // The reasons a token can be rejected
+    public enum Failure {
+        NONE,
+        EMPTY,
+        MALFORMED,
+        UNSUPPORTED,
+        BAD_SIGNATURE,
+        EXPIRED,
+        REVOKED,
+        STALE
+    }
+
+    // Fields
+
+    // The epoch of a token issued before we added one, see TokenEpochRegistry
+    public static final int NO_EPOCH = -1;
+
+    // The expiry of a token without one
+    public static final long NO_EXPIRATION = 0;
+
+    // A failure carries nothing else, so one instance per reason is shared by every invalid token
+    private static final ParsedJwt[] INVALID = new ParsedJwt[Failure.values().length];
+
+    static {
+        for (Failure failure : Failure.values()) {
+            INVALID[failure.ordinal()] = new ParsedJwt(failure, null, null, 0, NO_EPOCH, NO_EXPIRATION);
+        }
+    }
+
+    private final Failure failure;
+
+    private final Claims claims;
+
+    private final UserDetailsImpl principal;
+
+    private final long userId;
+
+    private final int tokenEpoch;
+
+    private final long expirationMs;
+
+    // Constructor
+    private ParsedJwt(Failure failure, Claims claims, UserDetailsImpl principal, long userId, int tokenEpoch,
+                      long expirationMs) {
+        this.failure = failure;
+        this.claims = claims;
+        this.principal = principal;
+        this.userId = userId;
+        this.tokenEpoch = tokenEpoch;
+        this.expirationMs = expirationMs;
+    }
+
+    // Factories
+    public static ParsedJwt valid(Claims claims, UserDetailsImpl principal) {
+        Number userId = ClaimProfile.read(claims, ClaimProfile::getId, Number.class);
+        Number tokenEpoch = ClaimProfile.read(claims, ClaimProfile::getEpoch, Number.class);
+        Date expiration = claims.getExpiration();
+        return new ParsedJwt(Failure.NONE, claims, principal,
+                userId == null ? 0 : userId.longValue(), tokenEpoch == null ? NO_EPOCH : tokenEpoch.intValue(),
+                expiration == null ? NO_EXPIRATION : expiration.getTime());
+    }
+
+    public static ParsedJwt invalid(Failure failure) {
+        return INVALID[failure.ordinal()];
+    }
+
+    // Getters
+    public boolean isValid() {
+        return failure == Failure.NONE;
+    }
+
+    public Failure getFailure() {
+        return failure;
+    }
+
+    public Claims getClaims() {
+        return claims;
+    }
+
+    public String getSubject() {
+        return claims == null ? null : claims.getSubject();
+    }
+
+    // The token's jti claim, tokens from before we issued ids do not have one
+    public String getId() {
+        return claims == null ? null : claims.getId();
+    }
+
+    public Date getIssuedAt() {
+        return claims == null ? null : claims.getIssuedAt();
+    }
+
+    public Date getExpiration() {
+        return claims == null ? null : claims.getExpiration();
+    }
+
+    // The expiry in epoch milliseconds, NO_EXPIRATION for a token without one
+    public long getExpirationMs() {
+        return expirationMs;
+    }
+
+    // The id of the user the token was issued to, 0 for tokens from before we added it
+    public long getUserId() {
+        return userId;
+    }
+
+    // The user's token epoch when the token was issued, NO_EPOCH for tokens from before we added it
+    public int getTokenEpoch() {
+        return tokenEpoch;
+    }
+
+    // The user from the token's claims, null when the user has to be loaded from the database
+    public UserDetailsImpl getPrincipal() {
+        return principal;
+    }
+}
@@ -0,0 +1,13 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+/*
+ How AuthTokenFilter turns a valid token into a logged in user.
+ DATABASE looks the user up by the username in the token, this always reflects the current roles.
+ TOKEN builds the user straight from the id, email and roles we put in the token when it was created,
+ which saves a trip to the database on every request. Role changes only show up once the user gets a new token.
+*/
+
+public enum PrincipalMode {
+    DATABASE,
+    TOKEN
+}
@@ -0,0 +1,115 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
+import no.noroff.statelessSecurity.securityUtil.services.ReactiveUserDetailsServiceImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/*
+ This class is the reactive stack's AuthTokenFilter, it runs on the event loop so nothing here may block.
+ It does the same steps:
+    - Extracts the JWT from the header
+    - Parses and verifies the JWT once through the same JwtUtil. A token from the cache is answered on the event
+      loop, checking a signature costs far more so a token that needs it is verified on the verification scheduler
+    - Takes the user from the JWT in TOKEN mode, otherwise from the cache or over R2DBC
+    - Puts an Authentication for that user in the reactive security context of this request only
+ There is no thread local context on this stack, the context travels with the subscription instead, so
+ nothing needs to be cleared afterwards.
+ It is not a bean, WebFlux would otherwise also run it outside the security chain. ReactiveSecurityConfig adds it.
+*/
+
+public class ReactiveAuthTokenFilter implements WebFilter {
+    // Dependencies
+    private final JwtUtil jwtUtil;
+
+    private final ReactiveUserDetailsServiceImpl userDetailsService;
+
+    private final AuthMetrics authMetrics;
+
+    private final InvalidTokenLogger invalidTokenLogger;
+
+    private final Scheduler tokenVerificationScheduler;
+
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveAuthTokenFilter.class);
+
+    // Constructors
+    public ReactiveAuthTokenFilter(JwtUtil jwtUtil, ReactiveUserDetailsServiceImpl userDetailsService,
+                                   AuthMetrics authMetrics, InvalidTokenLogger invalidTokenLogger,
+                                   Scheduler tokenVerificationScheduler) {
+        this.jwtUtil = jwtUtil;
+        this.userDetailsService = userDetailsService;
+        this.authMetrics = authMetrics;
+        this.invalidTokenLogger = invalidTokenLogger;
+        this.tokenVerificationScheduler = tokenVerificationScheduler;
+    }
+
+    // Overrides
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long stageStart = System.nanoTime();
+        String headerAuth = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        stageStart = authMetrics.recordFilterStage(AuthMetrics.FilterStage.HEADER, stageStart);
+        if (!JwtUtil.hasBearerToken(headerAuth)) {
+            return chain.filter(exchange);
+        }
+        // The token is verified where it is in the header, as in AuthTokenFilter
+        int offset = JwtUtil.BEARER_PREFIX.length();
+        ParsedJwt cached = jwtUtil.parseCachedJwtToken(headerAuth, offset);
+        Mono<ParsedJwt> parsed = cached != null
+                ? Mono.just(cached)
+                : Mono.fromCallable(() -> jwtUtil.verifyJwtToken(headerAuth, offset))
+                        .subscribeOn(tokenVerificationScheduler);
+        long verifyStart = stageStart;
+        return parsed.flatMap(parsedJwt -> {
+            long userLoadStart = authMetrics.recordFilterStage(AuthMetrics.FilterStage.VERIFY, verifyStart);
+            if (!parsedJwt.isValid()) {
+                return chain.filter(exchange);
+            }
+            return authenticate(exchange, chain, parsedJwt, userLoadStart);
+        });
+    }
+
+    private Mono<Void> authenticate(ServerWebExchange exchange, WebFilterChain chain, ParsedJwt parsedJwt,
+                                    long userLoadStart) {
+        Mono<UserDetails> user = parsedJwt.getPrincipal() != null
+                ? Mono.just(parsedJwt.getPrincipal())
+                : userDetailsService.findCachedByUsername(parsedJwt.getSubject());
+        return user
+                .map(userDetails -> {
+                    long contextStart = authMetrics.recordFilterStage(AuthMetrics.FilterStage.USER_LOAD, userLoadStart);
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                            userDetails, null, userDetails.getAuthorities());
+                    authMetrics.recordFilterStage(AuthMetrics.FilterStage.CONTEXT, contextStart);
+                    return authentication;
+                })
+                .flatMap(authentication -> chain.filter(exchange)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication))
+                        .thenReturn(true))
+                // For example a valid token for a user that has since been deleted
+                .switchIfEmpty(Mono.defer(() -> {
+                    invalidTokenLogger.warn(logger, "Cannot set user authentication: {}", "user not found");
+                    return chain.filter(exchange).thenReturn(true);
+                }))
+                .then();
+    }
+
+    // Also used by the reactive logout endpoint, to find the token it revokes
+    public static String parseJwt(ServerHttpRequest request) {
+        String headerAuth = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (JwtUtil.hasBearerToken(headerAuth)) {
+            return headerAuth.substring(JwtUtil.BEARER_PREFIX.length());
+        }
+        return null;
+    }
+}
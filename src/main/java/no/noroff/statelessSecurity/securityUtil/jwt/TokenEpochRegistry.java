@@ -0,0 +1,184 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ This class knows the current token epoch of every user, so a token carrying an older epoch can be rejected
+ on the request itself, without asking the database. See User for what the epoch is.
+
+ Almost every user is still at epoch 0, so only the others are kept, in a hash table of primitive longs and
+ ints. Looking a user up is one probe into two arrays, with nothing boxed and nothing allocated. Readers do
+ not lock, they use StampedLock's optimistic reads and only look again when a write happened meanwhile.
+
+ The table is loaded at startup, updated straight away when this instance changes an epoch, and reloaded
+ from the database on a schedule, which is how changes made by other instances reach us. Epochs only ever
+ go up, so a reload keeps the higher of the two values when it races with a local change.
+*/
+
+@Component
+// The users table is created by Hibernate, which must be done before we read it over JDBC
+@DependsOn("entityManagerFactory")
+public class TokenEpochRegistry {
+    // Dependencies
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(TokenEpochRegistry.class);
+
+    private static final String SELECT_EPOCHS = "select id, token_epoch from users where token_epoch <> 0";
+
+    private final StampedLock lock = new StampedLock();
+
+    // Only replaced or changed while holding the write lock
+    private EpochTable table = new EpochTable(16);
+
+    @PostConstruct
+    public void init() {
+        reload();
+        logger.info("Loaded token epochs for {} users", size());
+    }
+
+    // Lookup, the epoch of a user that is not in the table is 0
+    public int get(long userId) {
+        long stamp = lock.tryOptimisticRead();
+        int epoch = table.get(userId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                epoch = table.get(userId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return epoch;
+    }
+
+    // Called after a new epoch was committed to the database
+    public void put(long userId, int epoch) {
+        long stamp = lock.writeLock();
+        try {
+            table = table.putMax(userId, epoch);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Read-only, so with read replicas the scheduled reloads are served by a replica
+    @Scheduled(initialDelayString = "${noroff.app.tokenEpochRefreshMs}", fixedDelayString = "${noroff.app.tokenEpochRefreshMs}")
+    @Transactional(readOnly = true)
+    public void reload() {
+        EpochTable[] loaded = {new EpochTable(16)};
+        // Rows are streamed straight into the table, so no object is made per user
+        jdbcTemplate.query(SELECT_EPOCHS, row -> {
+            loaded[0] = loaded[0].putMax(row.getLong(1), row.getInt(2));
+        });
+        long stamp = lock.writeLock();
+        try {
+            EpochTable merged = loaded[0];
+            EpochTable current = table;
+            for (int i = 0; i < current.keys.length; i++) {
+                if (current.keys[i] != EpochTable.EMPTY) {
+                    merged = merged.putMax(current.keys[i], current.values[i]);
+                }
+            }
+            table = merged;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return table.size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /*
+     An open addressing hash table from user id to epoch with linear probing.
+     It is never more than half full, so a probe always reaches an empty slot. User ids start at 1,
+     which lets 0 mark an empty slot. Entries are never removed, epochs only go up.
+    */
+    private static final class EpochTable {
+        private static final long EMPTY = 0;
+
+        private final long[] keys;
+        private final int[] values;
+        private final int mask;
+        private int size;
+
+        private EpochTable(int capacity) {
+            keys = new long[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private int get(long key) {
+            int index = slot(key);
+            // Bounded by the length as well, an optimistic reader may see the table half way through a change
+            for (int probes = 0; probes < keys.length; probes++) {
+                long found = keys[index];
+                if (found == key) {
+                    return values[index];
+                }
+                if (found == EMPTY) {
+                    return 0;
+                }
+                index = (index + 1) & mask;
+            }
+            return 0;
+        }
+
+        // Stores the higher of the current and the given epoch, returns the table to use from now on
+        private EpochTable putMax(long key, int value) {
+            if (key == EMPTY) {
+                throw new IllegalArgumentException("User ids start at 1");
+            }
+            int index = slot(key);
+            while (keys[index] != EMPTY) {
+                if (keys[index] == key) {
+                    values[index] = Math.max(values[index], value);
+                    return this;
+                }
+                index = (index + 1) & mask;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                return grow().putMax(key, value);
+            }
+            // The value goes in first, so a reader that finds the key also finds its epoch
+            values[index] = value;
+            keys[index] = key;
+            size++;
+            return this;
+        }
+
+        private EpochTable grow() {
+            EpochTable grown = new EpochTable(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    grown.putMax(keys[i], values[i]);
+                }
+            }
+            return grown;
+        }
+
+        // The bits of the id are mixed, ids are sequential and would otherwise cluster
+        private int slot(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ This class remembers the tokens that were revoked by logging out, by the id in their jti claim.
+ Every authenticated request asks whether its token was revoked, so the answer must be quick and must not
+ involve the database. Almost every token is not revoked, and a Bloom filter answers that in a few hashes
+ without locking. Only when the filter says maybe do we look at the revoked ids themselves.
+
+ Revoked ids are kept in buckets by when their token expires. A token that has expired is rejected anyway,
+ so once every token in a bucket has expired the whole bucket is dropped. A Bloom filter cannot forget,
+ so it is built again from the remaining ids at the same time.
+ Revocations are appended to a file and read back at startup, so a restart does not bring tokens back.
+ Each instance keeps its own revocations, a token revoked on one instance is still accepted by the others.
+*/
+
+@Component
+public class TokenRevocationStore implements MeterBinder {
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationStore.class);
+
+    @Value("${noroff.app.revocationBucketMs}")
+    private long bucketMs;
+    @Value("${noroff.app.revocationExpectedTokens}")
+    private int expectedTokens;
+    // Empty means revocations are only kept in memory
+    @Value("${noroff.app.revocationFile}")
+    private String file;
+
+    // Revoked ids by the bucket their token's expiry falls in
+    private final Map<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter bloomFilter;
+
+    @PostConstruct
+    public void init() {
+        bloomFilter = new BloomFilter(expectedTokens);
+        if (!file.isEmpty() && Files.exists(Path.of(file))) {
+            load();
+        }
+    }
+
+    // Overrides
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("auth.jwt.revoked", this, TokenRevocationStore::size)
+                .description("Revoked tokens that have not expired yet")
+                .register(registry);
+    }
+
+    // Revocation
+
+    // Whether the token with this id, expiring at this time, was revoked
+    public boolean isRevoked(String jti, long expirationMs) {
+        if (!bloomFilter.mightContain(hash(jti))) {
+            return false;
+        }
+        Set<String> bucket = buckets.get(expirationMs / bucketMs);
+        return bucket != null && bucket.contains(jti);
+    }
+
+    // Revoking is rare, so it is synchronized with purging to keep the Bloom filter and the buckets in step
+    public synchronized void revoke(String jti, long expirationMs) {
+        if (expirationMs <= System.currentTimeMillis()) {
+            return;
+        }
+        add(jti, expirationMs);
+        if (!file.isEmpty()) {
+            try {
+                Files.writeString(Path.of(file), expirationMs + " " + jti + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                // The token is still revoked on this instance until it restarts
+                logger.error("Could not save revoked token to {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private void add(String jti, long expirationMs) {
+        buckets.computeIfAbsent(expirationMs / bucketMs, bucket -> ConcurrentHashMap.newKeySet()).add(jti);
+        bloomFilter.add(hash(jti));
+    }
+
+    // Drops the buckets where every token has expired, then rebuilds the Bloom filter and the file without them
+    @Scheduled(fixedDelayString = "${noroff.app.revocationBucketMs}")
+    public synchronized void purge() {
+        long currentBucket = System.currentTimeMillis() / bucketMs;
+        if (!buckets.keySet().removeIf(bucket -> bucket < currentBucket)) {
+            return;
+        }
+        BloomFilter rebuilt = new BloomFilter(expectedTokens);
+        for (Set<String> bucket : buckets.values()) {
+            for (String jti : bucket) {
+                rebuilt.add(hash(jti));
+            }
+        }
+        bloomFilter = rebuilt;
+        if (!file.isEmpty()) {
+            save();
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Set<String> bucket : buckets.values()) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    // Persistence, one "expiration jti" line per revoked token
+
+    private void load() {
+        long now = System.currentTimeMillis();
+        try {
+            List<String> lines = Files.readAllLines(Path.of(file), StandardCharsets.UTF_8);
+            for (String line : lines) {
+                int space = line.indexOf(' ');
+                if (space > 0) {
+                    long expirationMs = Long.parseLong(line.substring(0, space));
+                    if (expirationMs > now) {
+                        add(line.substring(space + 1), expirationMs);
+                    }
+                }
+            }
+            logger.info("Loaded {} revoked tokens from {}", size(), file);
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Could not read revoked tokens from " + file, e);
+        }
+    }
+
+    // Written next to the file and moved over it, so a crash while saving cannot lose the old file
+    private void save() {
+        Path path = Path.of(file);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Map.Entry<Long, Set<String>> bucket : buckets.entrySet()) {
+                // We only know the bucket, which ends after every token in it expires
+                long expirationMs = (bucket.getKey() + 1) * bucketMs - 1;
+                for (String jti : bucket.getValue()) {
+                    writer.write(expirationMs + " " + jti + "\n");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A 64 bit FNV-1a hash of the id, mixed so that both halves can be used as independent hashes
+    private static long hash(String jti) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < jti.length(); i++) {
+            hash ^= jti.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /*
+     A Bloom filter sized for about one false positive in a hundred at the expected number of tokens.
+     The bit positions come from the two halves of one hash, which works as well as separate hash functions.
+    */
+    private static final class BloomFilter {
+        private static final int HASHES = 7;
+        private static final int BITS_PER_TOKEN = 10;
+
+        private final AtomicLongArray words;
+        private final long bits;
+
+        private BloomFilter(int expectedTokens) {
+            int wordCount = (int) Math.max(1, ((long) expectedTokens * BITS_PER_TOKEN + 63) / 64);
+            words = new AtomicLongArray(wordCount);
+            bits = (long) wordCount * 64;
+        }
+
+        private void add(long hash) {
+            int low = (int) hash;
+            int high = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = ((low + i * high) & Integer.MAX_VALUE) % bits;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = words.get(word);
+                } while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        private boolean mightContain(long hash) {
+            int low = (int) hash;
+            int high = (int) (hash >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = ((low + i * high) & Integer.MAX_VALUE) % bits;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
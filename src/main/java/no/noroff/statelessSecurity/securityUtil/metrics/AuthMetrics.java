@@ -0,0 +1,158 @@
+package no.noroff.statelessSecurity.securityUtil.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtPreValidator;
+import no.noroff.statelessSecurity.securityUtil.jwt.ParsedJwt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ This class holds the timers and counters for every stage of authentication, published through Actuator
+ at /actuator/prometheus. It answers where the time of a slow request went:
+    - auth.filter.stage, the stages of AuthTokenFilter: reading the header, verifying the token,
+      loading the user and setting up the security context
+    - auth.jwt.sign and auth.jwt.verify, signing and verifying tokens, verify is tagged with the outcome
+    - auth.jwt.rejected, tokens turned away by JwtPreValidator before verification, tagged with the reason
+    - auth.user.load, loading a user from the database, tagged with whether they were found
+    - auth.endpoint, sign in and sign up from the moment the request arrives, including time in the queue
+    - auth.password, the BCrypt hashing and checking on its own
+    - auth.endpoint.rejected, requests turned away because the hashing executor was full
+
+ Every meter is registered once at startup and kept in an EnumMap. Looking a meter up in the registry by name
+ and tags on each request would allocate, so the record methods only take a start time from System.nanoTime
+ and an enum. They return the current time, so the stages of the filter can be timed back to back.
+*/
+
+@Component
+public class AuthMetrics {
+    // Dependencies
+    @Autowired
+    private MeterRegistry registry;
+
+    // Fields
+    public enum FilterStage { HEADER, VERIFY, USER_LOAD, CONTEXT }
+
+    public enum Endpoint { SIGNIN, SIGNUP }
+
+    public enum PasswordOperation { ENCODE, MATCH }
+
+    private final Map<FilterStage, Timer> filterStages = new EnumMap<>(FilterStage.class);
+    private final Map<ParsedJwt.Failure, Timer> verifications = new EnumMap<>(ParsedJwt.Failure.class);
+    private final Map<JwtPreValidator.Rejection, Counter> preValidationRejections =
+            new EnumMap<>(JwtPreValidator.Rejection.class);
+    private final Map<Endpoint, Timer> endpointSuccesses = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Timer> endpointFailures = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Counter> endpointRejections = new EnumMap<>(Endpoint.class);
+    private final Map<PasswordOperation, Timer> passwordOperations = new EnumMap<>(PasswordOperation.class);
+    private Timer signing;
+    private Timer userFound;
+    private Timer userNotFound;
+
+    @PostConstruct
+    public void init() {
+        for (FilterStage stage : FilterStage.values()) {
+            filterStages.put(stage, Timer.builder("auth.filter.stage")
+                    .description("Time spent in each stage of the JWT filter")
+                    .tag("stage", tagValue(stage))
+                    .register(registry));
+        }
+        for (ParsedJwt.Failure failure : ParsedJwt.Failure.values()) {
+            // A token that did not fail is valid
+            verifications.put(failure, Timer.builder("auth.jwt.verify")
+                    .description("Time spent verifying a token's signature and reading its claims")
+                    .tag("outcome", failure == ParsedJwt.Failure.NONE ? "valid" : tagValue(failure))
+                    .register(registry));
+        }
+        for (JwtPreValidator.Rejection rejection : JwtPreValidator.Rejection.values()) {
+            preValidationRejections.put(rejection, Counter.builder("auth.jwt.rejected")
+                    .description("Tokens rejected before their signature was checked")
+                    .tag("reason", tagValue(rejection))
+                    .register(registry));
+        }
+        for (Endpoint endpoint : Endpoint.values()) {
+            endpointSuccesses.put(endpoint, endpointTimer(endpoint, "success"));
+            endpointFailures.put(endpoint, endpointTimer(endpoint, "failure"));
+            endpointRejections.put(endpoint, Counter.builder("auth.endpoint.rejected")
+                    .description("Requests answered with 503 because the password hashing executor was full")
+                    .tag("endpoint", tagValue(endpoint))
+                    .register(registry));
+        }
+        for (PasswordOperation operation : PasswordOperation.values()) {
+            passwordOperations.put(operation, Timer.builder("auth.password")
+                    .description("Time spent hashing or checking a password")
+                    .tag("operation", tagValue(operation))
+                    .register(registry));
+        }
+        signing = Timer.builder("auth.jwt.sign")
+                .description("Time spent creating and signing a token")
+                .register(registry);
+        userFound = userLoadTimer("found");
+        userNotFound = userLoadTimer("not_found");
+    }
+
+    private Timer endpointTimer(Endpoint endpoint, String outcome) {
+        return Timer.builder("auth.endpoint")
+                .description("Time from receiving a sign in or sign up request until its answer is ready")
+                .tag("endpoint", tagValue(endpoint))
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private Timer userLoadTimer(String outcome) {
+        return Timer.builder("auth.user.load")
+                .description("Time spent loading a user and their roles from the database")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase();
+    }
+
+    // Recording, each of these records the time since startNanos and returns the current time
+
+    public long recordFilterStage(FilterStage stage, long startNanos) {
+        return record(filterStages.get(stage), startNanos);
+    }
+
+    public long recordVerify(ParsedJwt.Failure outcome, long startNanos) {
+        return record(verifications.get(outcome), startNanos);
+    }
+
+    public long recordSign(long startNanos) {
+        return record(signing, startNanos);
+    }
+
+    public long recordUserLoad(boolean found, long startNanos) {
+        return record(found ? userFound : userNotFound, startNanos);
+    }
+
+    public long recordEndpoint(Endpoint endpoint, boolean success, long startNanos) {
+        return record((success ? endpointSuccesses : endpointFailures).get(endpoint), startNanos);
+    }
+
+    public long recordPassword(PasswordOperation operation, long startNanos) {
+        return record(passwordOperations.get(operation), startNanos);
+    }
+
+    public void recordPreValidationRejected(JwtPreValidator.Rejection rejection) {
+        preValidationRejections.get(rejection).increment();
+    }
+
+    public void recordRejected(Endpoint endpoint) {
+        endpointRejections.get(endpoint).increment();
+    }
+
+    private static long record(Timer timer, long startNanos) {
+        long now = System.nanoTime();
+        timer.record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+}
@@ -0,0 +1,43 @@
+package no.noroff.statelessSecurity.securityUtil.metrics;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/*
+ This class wraps our password encoder and times every hash and every check.
+ Sign in and sign up spend most of their time in BCrypt, and timing it on its own shows how much of a slow
+ sign in was hashing and how much was waiting for the hashing executor or the database.
+*/
+
+public class TimedPasswordEncoder implements PasswordEncoder {
+    // Fields
+    private final PasswordEncoder delegate;
+    private final AuthMetrics authMetrics;
+
+    // Constructors
+    public TimedPasswordEncoder(PasswordEncoder delegate, AuthMetrics authMetrics) {
+        this.delegate = delegate;
+        this.authMetrics = authMetrics;
+    }
+
+    // Overrides
+    @Override
+    public String encode(CharSequence rawPassword) {
+        long start = System.nanoTime();
+        String encoded = delegate.encode(rawPassword);
+        authMetrics.recordPassword(AuthMetrics.PasswordOperation.ENCODE, start);
+        return encoded;
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        long start = System.nanoTime();
+        boolean matches = delegate.matches(rawPassword, encodedPassword);
+        authMetrics.recordPassword(AuthMetrics.PasswordOperation.MATCH, start);
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
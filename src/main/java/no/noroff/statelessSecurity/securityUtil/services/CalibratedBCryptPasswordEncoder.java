@@ -0,0 +1,93 @@
+package no.noroff.statelessSecurity.securityUtil.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/*
+ This is our BCrypt password encoder, with two additions to the standard one.
+ It can measure how long hashing takes on the machine we run on and pick its strength from that,
+ so every node spends about the same time per hash whatever hardware it has.
+ It also reports every stored hash made with a lower strength as needing an upgrade. Spring Security then
+ hashes the password again with our strength when that user signs in, through UserDetailsPasswordService.
+ A stronger hash is left alone, otherwise nodes that calibrated to different strengths would keep rehashing
+ each other's hashes on every sign in.
+*/
+
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+    // BCrypt does not allow strengths above this
+    private static final int MAX_STRENGTH = 31;
+
+    private static final String CALIBRATION_PASSWORD = "calibration-password";
+
+    private final int strength;
+
+    // Constructors
+    public CalibratedBCryptPasswordEncoder(int strength) {
+        super(strength);
+        this.strength = strength;
+    }
+
+    /*
+     Picks the highest strength where one hash takes no longer than the target time, but never goes below
+     the minimum strength. Every step up doubles the time a hash takes, so we measure from the minimum upwards
+     and stop as soon as we are over the target.
+    */
+    public static CalibratedBCryptPasswordEncoder calibrate(int minStrength, long targetMs) {
+        // Warm up so the first measurement is not slowed down by the JIT compiler
+        for (int i = 0; i < 3; i++) {
+            new BCryptPasswordEncoder(minStrength).encode(CALIBRATION_PASSWORD);
+        }
+        int strength = minStrength;
+        long millis = timeHash(minStrength);
+        long chosenMillis = millis;
+        while (strength < MAX_STRENGTH && millis <= targetMs) {
+            chosenMillis = millis;
+            millis = timeHash(strength + 1);
+            if (millis <= targetMs) {
+                strength++;
+            }
+        }
+        if (chosenMillis > targetMs) {
+            logger.warn("BCrypt strength {} takes {} ms per hash, which is over the target of {} ms",
+                    strength, chosenMillis, targetMs);
+        } else {
+            logger.info("BCrypt strength {} chosen, {} ms per hash with a target of {} ms",
+                    strength, chosenMillis, targetMs);
+        }
+        return new CalibratedBCryptPasswordEncoder(strength);
+    }
+
+    // The fastest of a few runs, the others are more likely to include pauses that have nothing to do with BCrypt
+    private static long timeHash(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            encoder.encode(CALIBRATION_PASSWORD);
+            fastest = Math.min(fastest, (System.nanoTime() - start) / 1_000_000);
+        }
+        return fastest;
+    }
+
+    // Overrides
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // A BCrypt hash looks like $2a$10$..., where 10 is the strength it was made with
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) < strength;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+}
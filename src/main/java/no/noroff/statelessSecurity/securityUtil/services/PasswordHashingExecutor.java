@@ -0,0 +1,93 @@
+package no.noroff.statelessSecurity.securityUtil.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ This class runs the work that hashes or checks passwords, signing in and signing up.
+ BCrypt is deliberately slow, and running it on the web server's request threads means a burst of logins
+ can take all of them, leaving none for the cheap requests that only carry a token.
+ Here it gets its own small pool of threads with a bounded queue. When the queue is full, execute throws a
+ RejectedExecutionException straight away so the client can be told to try again later, instead of waiting.
+ The queue length and the number of busy threads are published as gauges, a queue that is often full means
+ we need more cores or a lower BCrypt strength.
+*/
+
+@Component
+public class PasswordHashingExecutor implements Executor, MeterBinder {
+    // Fields
+    @Value("${noroff.app.hashingThreads}")
+    private int threads;
+    @Value("${noroff.app.hashingQueueCapacity}")
+    private int queueCapacity;
+    @Value("${noroff.app.hashingRetryAfterSeconds}")
+    private int retryAfterSeconds;
+
+    private int poolSize;
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        // Zero threads means one per core, hashing is pure CPU work so more would only compete with each other
+        poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Overrides
+    @Override
+    public void execute(Runnable command) throws RejectedExecutionException {
+        executor.execute(command);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("auth.hashing.queue", this, PasswordHashingExecutor::getQueueSize)
+                .description("Sign ins and sign ups waiting for a hashing thread")
+                .register(registry);
+        Gauge.builder("auth.hashing.active", this, PasswordHashingExecutor::getActiveCount)
+                .description("Hashing threads that are busy")
+                .register(registry);
+    }
+
+    // How long clients should wait before trying again when we are full
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+}
@@ -0,0 +1,74 @@
+package no.noroff.statelessSecurity.securityUtil.services;
+
+import no.noroff.statelessSecurity.repositories.ReactiveUserRepository;
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/*
+ This class is the reactive stack's UserDetailsServiceImpl, it reads the user and their roles in one query
+ over R2DBC and builds the same UserDetailsImpl from the rows.
+ Users are cached in the same UserDetailsCache as on the servlet stack, so evicting a changed user works for
+ both. Signing in passes cached=false, a password must always be checked against the database.
+ An unknown user gives an empty Mono, Spring Security turns that into bad credentials.
+*/
+
+@Service
+@Profile("reactive")
+public class ReactiveUserDetailsServiceImpl implements ReactiveUserDetailsService, ReactiveUserDetailsPasswordService {
+    // Dependencies
+    @Autowired
+    ReactiveUserRepository userRepository;
+
+    @Autowired
+    UserDetailsCache userDetailsCache;
+
+    @Autowired
+    AuthMetrics authMetrics;
+
+    // Overrides
+    @Override
+    public Mono<UserDetails> findByUsername(String username) {
+        return load(username, false);
+    }
+
+    @Override
+    public Mono<UserDetails> updatePassword(UserDetails user, String newPassword) {
+        return userRepository.updatePassword(user.getUsername(), newPassword)
+                .doOnSuccess(updated -> userDetailsCache.evict(user.getUsername()))
+                .thenReturn(((UserDetailsImpl) user).withPassword(newPassword));
+    }
+
+    // Used by the token filter, which may use a cached user
+    public Mono<UserDetails> findCachedByUsername(String username) {
+        return load(username, true);
+    }
+
+    private Mono<UserDetails> load(String username, boolean cached) {
+        if (cached) {
+            UserDetails user = userDetailsCache.getIfPresent(username);
+            if (user != null) {
+                return Mono.just(user);
+            }
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return userRepository.findAuthRowsByUsername(username)
+                    .collectList()
+                    .flatMap(rows -> {
+                        authMetrics.recordUserLoad(!rows.isEmpty(), start);
+                        if (rows.isEmpty()) {
+                            return Mono.empty();
+                        }
+                        UserDetails user = UserDetailsImpl.build(rows);
+                        userDetailsCache.put(username, user);
+                        return Mono.just(user);
+                    });
+        });
+    }
+}
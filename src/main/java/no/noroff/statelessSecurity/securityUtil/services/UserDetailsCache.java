@@ -0,0 +1,107 @@
+package no.noroff.statelessSecurity.securityUtil.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.TimeUnit;
+
+/*
+ This class sits in front of our UserDetailsServiceImpl and remembers the users it has loaded.
+ AuthTokenFilter needs the user on every request, and without this every request would query the database.
+ Entries live for a fixed time and the cache has a maximum size. When many requests for the same user
+ arrive at once, only one of them loads the user while the others wait for that result.
+
+ Anything that changes a user, such as signing up or changing their roles, must call evict so the next
+ request sees the change. Signing in still goes straight to UserDetailsServiceImpl, so a password is always
+ checked against the database.
+ Its hit rate and load times are published with our other metrics as the users cache.
+ The reactive stack shares this cache, it cannot wait for a load so it looks users up and adds them itself.
+*/
+
+@Service
+public class UserDetailsCache implements UserDetailsService, MeterBinder {
+    // Dependencies
+
+    /*
+     Lazy because the service records its loads in the meter registry, and the registry binds this cache when it
+     is created. Otherwise whichever of the two is created first finds the other half made.
+    */
+    @Autowired
+    @Lazy
+    private UserDetailsServiceImpl userDetailsService;
+
+    // Fields
+    @Value("${noroff.app.userCacheEnabled}")
+    private boolean enabled;
+    @Value("${noroff.app.userCacheTtlMs}")
+    private long ttlMs;
+    @Value("${noroff.app.userCacheMaxSize}")
+    private long maxSize;
+
+    private Cache<String, UserDetails> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    // Overrides
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        if (!enabled) {
+            return userDetailsService.loadUserByUsername(username);
+        }
+        // Unknown users throw here and are not cached
+        return cache.get(username, userDetailsService::loadUserByUsername);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "users");
+    }
+
+    // For ReactiveUserDetailsServiceImpl, null when the user is not cached
+    public UserDetails getIfPresent(String username) {
+        return enabled ? cache.getIfPresent(username) : null;
+    }
+
+    public void put(String username, UserDetails user) {
+        if (enabled) {
+            cache.put(username, user);
+        }
+    }
+
+    // Invalidation
+    public void evict(String username) {
+        cache.invalidate(username);
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    // Statistics, these contain the hit rate and how long loading users took
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
@@ -1,64 +1,96 @@
 package no.noroff.statelessSecurity.securityUtil.services;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import no.noroff.statelessSecurity.models.domain.Role;
+import no.noroff.statelessSecurity.models.domain.RoleType;
 import no.noroff.statelessSecurity.models.domain.User;
+import no.noroff.statelessSecurity.models.dto.UserAuthRow;
+import no.noroff.statelessSecurity.securityUtil.access.RoleAuthoritySet;
+import no.noroff.statelessSecurity.securityUtil.access.RoleMask;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 /*
     This class is our extension of the default UserDetails Spring Security has.
     It is extended to provide a way of accessing all the User entity fields as well as converting our
-    roles into GrantedAuthority.
+    roles into GrantedAuthority. The roles are kept as a RoleAuthoritySet, so hasRole is a bit test.
+    Instances never change after they are built, which lets UserDetailsCache share them between requests.
  */
 
 public class UserDetailsImpl implements UserDetails {
     // Fields
-    private Long id;
+    private final Long id;
 
-    private String username;
+    private final String username;
 
-    private String email;
+    private final String email;
 
     // We dont want the password to be shown, so we simply ignore it.
     @JsonIgnore
-    private String password;
+    private final String password;
 
-    // This is what our roles will be represented as
-    private Collection<? extends GrantedAuthority> authorities;
+    // This is what our roles will be represented as, a bit per RoleType that Spring Security sees as a collection
+    private final RoleAuthoritySet authorities;
+
+    // Written into the user's tokens, see User
+    private final int tokenEpoch;
 
     // Constructor
     public UserDetailsImpl(Long id, String username, String email,
-                           String password, Collection<? extends GrantedAuthority> authorities) {
+                           String password, Collection<? extends GrantedAuthority> authorities, int tokenEpoch) {
         this.id = id;
         this.username = username;
         this.email = email;
         this.password = password;
-        this.authorities = authorities;
+        this.authorities = RoleAuthoritySet.of(authorities);
+        this.tokenEpoch = tokenEpoch;
     }
 
     // Build method to create a new UserDetailsImpl, this method converts our Role into GrantedAuthority
     public static UserDetailsImpl build(User user) {
-        /*
-         Here we use StreamAPI to create a list of GrantedAuthority from or role names.
-         SimpleGrantedAuthority has a constructor that can take an argument that represents the role.
-        */
-        List<GrantedAuthority> authorities = user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority(role.getName().name()))
-                .collect(Collectors.toList());
+        // Each role is a bit in the mask, the GrantedAuthority objects are shared by every user
+        int roleMask = RoleMask.NONE;
+        for (Role role : user.getRoles()) {
+            roleMask |= RoleMask.of(role.getName());
+        }
 
         return new UserDetailsImpl(
                 user.getId(),
                 user.getUsername(),
                 user.getEmail(),
                 user.getPassword(),
-                authorities);
+                RoleAuthoritySet.of(roleMask),
+                user.getTokenEpoch());
+    }
+
+    // Build method for the rows of UserRepository.findAuthRowsByUsername, one row per role of the same user
+    public static UserDetailsImpl build(List<UserAuthRow> rows) {
+        UserAuthRow first = rows.get(0);
+        int roleMask = RoleMask.NONE;
+        for (UserAuthRow row : rows) {
+            if (row.getRole() != null) {
+                roleMask |= RoleMask.of(row.getRole());
+            }
+        }
+
+        return new UserDetailsImpl(
+                first.getId(),
+                first.getUsername(),
+                first.getEmail(),
+                first.getPassword(),
+                RoleAuthoritySet.of(roleMask),
+                first.getTokenEpoch());
+    }
+
+    // A copy of this user with another password hash, used when the hash is upgraded
+    public UserDetailsImpl withPassword(String password) {
+        return new UserDetailsImpl(id, username, email, password, authorities, tokenEpoch);
     }
 
     // Extensions
@@ -71,6 +103,24 @@ public class UserDetailsImpl implements UserDetails {
         return id;
     }
 
+    public int getTokenEpoch() {
+        return tokenEpoch;
+    }
+
+    // The roles as a RoleMask, for CompiledAccessDecisionManager
+    public int getRoleMask() {
+        return authorities.getMask();
+    }
+
+    // A bit test, where going through getAuthorities compares the name of every authority
+    public boolean hasRole(RoleType role) {
+        return authorities.hasRole(role);
+    }
+
+    public EnumSet<RoleType> getRoles() {
+        return authorities.getRoles();
+    }
+
     // Overrides
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -1,33 +1,60 @@
 package no.noroff.statelessSecurity.securityUtil.services;
 
-import no.noroff.statelessSecurity.models.domain.User;
+import no.noroff.statelessSecurity.models.dto.UserAuthRow;
 import no.noroff.statelessSecurity.repositories.UserRepository;
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 
 /*
  This class is our UserDetailsService implementation, it is responsible for providing
  a mechanism for Spring Security to access our database Users and have them in a form
- it understands - UserDetails
+ it understands - UserDetails.
+ The user and their roles are read in a single query straight into rows, so there are no entities
+ for Hibernate to manage, and the transaction is read-only.
+ As a UserDetailsPasswordService it also stores a password that Spring Security hashed again at sign in,
+ because the old hash was made with a different BCrypt strength than we use now.
 */
 @Service
-@Transactional
-public class UserDetailsServiceImpl implements UserDetailsService {
+@Transactional(readOnly = true)
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    AuthMetrics authMetrics;
+
+    @Autowired
+    UserDetailsCache userDetailsCache;
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        // We fetch our user from our database and create a new UserDetailImpl with our database user
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
-        return UserDetailsImpl.build(user);
+        long start = System.nanoTime();
+        // We fetch our user and their roles from our database and create a new UserDetailImpl from those rows
+        List<UserAuthRow> rows = userRepository.findAuthRowsByUsername(username);
+        authMetrics.recordUserLoad(!rows.isEmpty(), start);
+        if (rows.isEmpty()) {
+            throw new UsernameNotFoundException("User Not Found with username: " + username);
+        }
+        return UserDetailsImpl.build(rows);
+    }
+
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        // Make sure no copy with the old hash is served from the cache
+        userDetailsCache.evict(user.getUsername());
+        return ((UserDetailsImpl) user).withPassword(newPassword);
     }
 }
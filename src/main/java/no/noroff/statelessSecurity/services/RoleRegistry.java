@@ -0,0 +1,84 @@
+package no.noroff.statelessSecurity.services;
+
+import no.noroff.statelessSecurity.models.domain.Role;
+import no.noroff.statelessSecurity.models.domain.RoleType;
+import no.noroff.statelessSecurity.repositories.RoleRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ This class holds every Role in our database, one for each RoleType.
+ The roles table never changes while the application runs, so we read it once at startup and create any
+ missing roles, instead of looking roles up by name every time a user signs up.
+ It also knows which RoleType the role names in a SignupRequest stand for.
+*/
+
+@Component
+public class RoleRegistry {
+    // Dependencies
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Fields
+
+    // The names clients use for roles when signing up, anything we do not recognise becomes a regular user
+    private static final Map<String, RoleType> REQUESTED_ROLES = Map.of(
+            "admin", RoleType.ROLE_ADMIN,
+            "mod", RoleType.ROLE_MODERATOR,
+            "user", RoleType.ROLE_USER);
+
+    private Map<RoleType, Role> roles;
+
+    /*
+     One read-write transaction, so the roles we may add to are read from the primary database and never from
+     a read replica that has not caught up yet, see ReadWriteRoutingDataSource.
+    */
+    @PostConstruct
+    public void init() {
+        Map<RoleType, Role> loaded = new EnumMap<>(RoleType.class);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Role role : roleRepository.findAll()) {
+                loaded.put(role.getName(), role);
+            }
+            // Seed the roles that are not in the database yet
+            for (RoleType type : RoleType.values()) {
+                if (!loaded.containsKey(type)) {
+                    loaded.put(type, roleRepository.save(new Role(type)));
+                }
+            }
+        });
+        roles = Collections.unmodifiableMap(loaded);
+    }
+
+    public Role get(RoleType type) {
+        return roles.get(type);
+    }
+
+    public RoleType resolve(String requestedRole) {
+        return REQUESTED_ROLES.getOrDefault(requestedRole, RoleType.ROLE_USER);
+    }
+
+    // Turns the role names from a SignupRequest into roles, a user without requested roles is a regular user
+    public Set<Role> resolveAll(Set<String> requestedRoles) {
+        Set<Role> resolved = new HashSet<>();
+        if (requestedRoles == null) {
+            resolved.add(get(RoleType.ROLE_USER));
+        } else {
+            for (String requestedRole : requestedRoles) {
+                resolved.add(get(resolve(requestedRole)));
+            }
+        }
+        return resolved;
+    }
+}
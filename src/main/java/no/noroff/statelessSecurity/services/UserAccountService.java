@@ -0,0 +1,66 @@
+package no.noroff.statelessSecurity.services;
+
+import no.noroff.statelessSecurity.models.domain.User;
+import no.noroff.statelessSecurity.repositories.UserRepository;
+import no.noroff.statelessSecurity.securityUtil.jwt.TokenEpochRegistry;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/*
+ This class makes the changes to a user account that must take effect on tokens already handed out.
+ Each change raises the user's token epoch in the same transaction, and once it is committed the new epoch
+ goes to TokenEpochRegistry and the cached user is evicted. From then on every older token of the user is
+ rejected as stale, and they have to sign in again to get a token with their new roles.
+*/
+
+@Service
+public class UserAccountService {
+    // Dependencies
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RoleRegistry roleRegistry;
+
+    @Autowired
+    private TokenEpochRegistry tokenEpochRegistry;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    // Replaces the user's roles, returns false when there is no such user
+    public boolean changeRoles(long userId, Set<String> requestedRoles) {
+        return update(userId, user -> user.setRoles(roleRegistry.resolveAll(requestedRoles)));
+    }
+
+    // Logs the user out on every device, returns false when there is no such user
+    public boolean invalidateTokens(long userId) {
+        return update(userId, user -> {
+        });
+    }
+
+    private boolean update(long userId, Consumer<User> change) {
+        User updated = transactionTemplate.execute(status -> {
+            User user = userRepository.findById(userId).orElse(null);
+            if (user != null) {
+                change.accept(user);
+                user.setTokenEpoch(user.getTokenEpoch() + 1);
+            }
+            return user;
+        });
+        if (updated == null) {
+            return false;
+        }
+        tokenEpochRegistry.put(userId, updated.getTokenEpoch());
+        userDetailsCache.evict(updated.getUsername());
+        return true;
+    }
+}
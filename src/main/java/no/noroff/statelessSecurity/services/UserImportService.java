@@ -0,0 +1,291 @@
+package no.noroff.statelessSecurity.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import no.noroff.statelessSecurity.models.domain.Role;
+import no.noroff.statelessSecurity.models.dto.SignupRequest;
+import no.noroff.statelessSecurity.models.dto.UserImportReport;
+import no.noroff.statelessSecurity.models.dto.UserImportResult;
+import no.noroff.statelessSecurity.repositories.UserRepository;
+import no.noroff.statelessSecurity.securityUtil.services.PasswordHashingExecutor;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/*
+ This class imports many users at once, for example when a new tenant moves their accounts to us.
+ Records are read one at a time from a JSON array or from newline delimited JSON, each shaped like a
+ SignupRequest, and handled in batches:
+    - Records that are invalid, or whose username or email is taken, are reported and skipped
+    - The passwords of the rest are hashed in parallel on the PasswordHashingExecutor, no more at a time than
+      it has threads, so sign ins keep getting their turn and an import never hashes on more cores than they do
+    - The users and their roles are inserted with JDBC batch statements in one transaction per batch
+ User ids come from the database, so instead of reading them back we insert the user_roles rows by
+ selecting each new user's id by username. On Postgres, adding reWriteBatchedInserts=true to the
+ datasource url lets the driver send each batch as a few multi-row inserts.
+*/
+
+@Service
+public class UserImportService {
+    // Dependencies
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder encoder;
+
+    @Autowired
+    private RoleRegistry roleRegistry;
+
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private PasswordHashingExecutor hashingExecutor;
+
+    @Autowired
+    private Validator validator;
+
+    // Fields
+    private static final Logger logger = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final String INSERT_USER =
+            "insert into users (username, email, password) values (:username, :email, :password)";
+    private static final String INSERT_USER_ROLE =
+            "insert into user_roles (user_id, role_id) select id, :roleId from users where username = :username";
+    private static final String SELECT_TAKEN =
+            "select username, email from users where username in (:usernames) or email in (:emails)";
+
+    private static final String IMPORTED = "User registered successfully!";
+    private static final String USERNAME_TAKEN = "Error: Username is already taken!";
+    private static final String EMAIL_TAKEN = "Error: Email is already in use!";
+
+    // How long to wait before trying again when sign ins have filled the hashing queue
+    private static final long HASHING_RETRY_MS = 50;
+
+    @Value("${noroff.app.importBatchSize}")
+    private int batchSize;
+
+    public UserImportReport importUsers(InputStream input) throws IOException {
+        long start = System.nanoTime();
+        List<UserImportResult> results = new ArrayList<>();
+        List<PendingUser> batch = new ArrayList<>(batchSize);
+        int index = 0;
+        String readError = null;
+        try (MappingIterator<SignupRequest> requests = objectMapper.readerFor(SignupRequest.class).readValues(input)) {
+            while (requests.hasNextValue()) {
+                batch.add(new PendingUser(index++, requests.nextValue()));
+                if (batch.size() == batchSize) {
+                    importBatch(batch, results);
+                    batch.clear();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // We cannot find the start of the next record after broken JSON, so we stop reading here
+            readError = "Error: Could not read record: " + e.getOriginalMessage();
+        }
+        importBatch(batch, results);
+        if (readError != null) {
+            results.add(new UserImportResult(index, null, false, readError));
+        }
+
+        UserImportReport report = new UserImportReport(results, (System.nanoTime() - start) / 1_000_000);
+        logger.info("Imported {} of {} users in {} ms ({} rows/s)", report.getImported(), report.getTotal(),
+                report.getElapsedMs(), Math.round(report.getRowsPerSecond()));
+        return report;
+    }
+
+    private void importBatch(List<PendingUser> batch, List<UserImportResult> results) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<PendingUser> accepted = rejectDuplicates(batch);
+
+        hashPasswords(accepted);
+
+        if (!accepted.isEmpty()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(accepted));
+            } catch (DataAccessException e) {
+                // Someone signed up with one of these names while we were hashing, so we insert one by one instead
+                insertOneByOne(accepted);
+            }
+        }
+
+        for (PendingUser user : batch) {
+            if (user.error == null) {
+                userDetailsCache.evict(user.request.getUsername());
+            }
+            results.add(new UserImportResult(user.index, user.request.getUsername(),
+                    user.error == null, user.error == null ? IMPORTED : user.error));
+        }
+    }
+
+    // Marks invalid records and names that are taken, both in the database and earlier in this batch
+    private List<PendingUser> rejectDuplicates(List<PendingUser> batch) {
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (PendingUser user : batch) {
+            user.error = validate(user.request);
+            if (user.error == null) {
+                usernames.add(user.request.getUsername());
+                emails.add(user.request.getEmail());
+            }
+        }
+
+        Set<String> takenUsernames = new HashSet<>();
+        Set<String> takenEmails = new HashSet<>();
+        if (!usernames.isEmpty()) {
+            MapSqlParameterSource parameters = new MapSqlParameterSource()
+                    .addValue("usernames", usernames)
+                    .addValue("emails", emails);
+            jdbcTemplate.query(SELECT_TAKEN, parameters, row -> {
+                takenUsernames.add(row.getString("username"));
+                takenEmails.add(row.getString("email"));
+            });
+        }
+
+        List<PendingUser> accepted = new ArrayList<>(batch.size());
+        for (PendingUser user : batch) {
+            if (user.error != null) {
+                continue;
+            }
+            if (takenUsernames.contains(user.request.getUsername())) {
+                user.error = USERNAME_TAKEN;
+            } else if (takenEmails.contains(user.request.getEmail())) {
+                user.error = EMAIL_TAKEN;
+            } else {
+                // Only an accepted record takes its names, so the same name later in this batch is refused
+                takenUsernames.add(user.request.getUsername());
+                takenEmails.add(user.request.getEmail());
+                user.roles = roleRegistry.resolveAll(user.request.getRole());
+                accepted.add(user);
+            }
+        }
+        return accepted;
+    }
+
+    // Hashes the passwords a window of one per hashing thread at a time, each window waits for the one before
+    private void hashPasswords(List<PendingUser> users) {
+        int window = hashingExecutor.getPoolSize();
+        for (int from = 0; from < users.size(); from += window) {
+            List<PendingUser> hashing = users.subList(from, Math.min(from + window, users.size()));
+            CompletableFuture<?>[] hashed = new CompletableFuture<?>[hashing.size()];
+            for (int i = 0; i < hashed.length; i++) {
+                PendingUser user = hashing.get(i);
+                hashed[i] = submitHashing(() -> user.passwordHash = encoder.encode(user.request.getPassword()));
+            }
+            try {
+                CompletableFuture.allOf(hashed).join();
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Could not hash passwords", e.getCause());
+            }
+        }
+    }
+
+    // Sign ins that find the queue full are turned away, the import waits for room instead
+    private CompletableFuture<Void> submitHashing(Runnable hash) {
+        while (true) {
+            try {
+                return CompletableFuture.runAsync(hash, hashingExecutor);
+            } catch (RejectedExecutionException e) {
+                try {
+                    Thread.sleep(HASHING_RETRY_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while hashing passwords", interrupted);
+                }
+            }
+        }
+    }
+
+    // The rules of the SignupRequest annotations, as the sign up endpoint checks them
+    private String validate(SignupRequest request) {
+        Set<ConstraintViolation<SignupRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return "Error: " + violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private void insert(List<PendingUser> users) {
+        SqlParameterSource[] userRows = new SqlParameterSource[users.size()];
+        List<SqlParameterSource> roleRows = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            PendingUser user = users.get(i);
+            userRows[i] = new MapSqlParameterSource()
+                    .addValue("username", user.request.getUsername())
+                    .addValue("email", user.request.getEmail())
+                    .addValue("password", user.passwordHash);
+            for (Role role : user.roles) {
+                roleRows.add(new MapSqlParameterSource()
+                        .addValue("roleId", role.getId())
+                        .addValue("username", user.request.getUsername()));
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_USER, userRows);
+        jdbcTemplate.batchUpdate(INSERT_USER_ROLE, roleRows.toArray(new SqlParameterSource[0]));
+    }
+
+    private void insertOneByOne(List<PendingUser> users) {
+        for (PendingUser user : users) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(List.of(user)));
+            } catch (DataIntegrityViolationException e) {
+                user.error = userRepository.existsByUsernameOnPrimary(user.request.getUsername())
+                        ? USERNAME_TAKEN
+                        : EMAIL_TAKEN;
+            }
+        }
+    }
+
+    // A record on its way through the import
+    private static final class PendingUser {
+        private final int index;
+        private final SignupRequest request;
+        private String error;
+        private String passwordHash;
+        private Set<Role> roles;
+
+        private PendingUser(int index, SignupRequest request) {
+            this.index = index;
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package no.noroff.statelessSecurity.controllers;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import no.noroff.statelessSecurity.securityUtil.services.PasswordHashingExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// One hashing thread and room for one more in the queue, so two slow tasks fill the executor
+@SpringBootTest(properties = {
+		"noroff.app.hashingThreads=1",
+		"noroff.app.hashingQueueCapacity=1",
+		"noroff.app.hashingRetryAfterSeconds=7"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AuthControllerOverloadTests {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private PasswordHashingExecutor hashingExecutor;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	void registerUser_fullExecutor_answers503WithRetryAfter() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		Runnable blocked = () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		hashingExecutor.execute(blocked);
+		hashingExecutor.execute(blocked);
+		try {
+			mockMvc.perform(post("/api/auth/signup")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content("{\"username\":\"busy\",\"email\":\"busy@noroff.no\",\"password\":\"password\"}"))
+					.andExpect(status().isServiceUnavailable())
+					.andExpect(header().string(HttpHeaders.RETRY_AFTER, "7"))
+					.andExpect(jsonPath("$.message").value("Error: Server is busy, please try again later."));
+		} finally {
+			release.countDown();
+		}
+
+		assertEquals(1.0, meterRegistry.get("auth.endpoint.rejected").tag("endpoint", "signup").counter().count());
+		assertEquals(0.0, meterRegistry.get("auth.endpoint.rejected").tag("endpoint", "signin").counter().count());
+	}
+
+}
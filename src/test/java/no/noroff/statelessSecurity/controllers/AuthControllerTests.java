@@ -0,0 +1,144 @@
+package no.noroff.statelessSecurity.controllers;
+
+import no.noroff.statelessSecurity.models.dto.JwtResponse;
+import no.noroff.statelessSecurity.models.dto.LoginRequest;
+import no.noroff.statelessSecurity.models.dto.MessageResponse;
+import no.noroff.statelessSecurity.models.dto.SignupRequest;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.jwt.ParsedJwt;
+import no.noroff.statelessSecurity.securityUtil.jwt.TokenEpochRegistry;
+import no.noroff.statelessSecurity.services.UserAccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A hashing thread per client, so the concurrent sign ups really insert at the same time
+@SpringBootTest(properties = {"noroff.app.bcryptStrength=4", "noroff.app.hashingThreads=" + AuthControllerTests.THREADS})
+@ActiveProfiles("test")
+class AuthControllerTests {
+
+	static final int THREADS = 16;
+
+	@Autowired
+	private AuthController authController;
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	@Autowired
+	private UserAccountService userAccountService;
+
+	@Autowired
+	private TokenEpochRegistry tokenEpochRegistry;
+
+	@Test
+	void registerUser_concurrentSameUsername_onlyOneSucceeds() throws Exception {
+		List<ResponseEntity<?>> responses = signUpConcurrently(i -> signupRequest("racer", "racer" + i + "@noroff.no"));
+
+		assertEquals(1, count(responses, "User registered successfully!"));
+		assertEquals(THREADS - 1, count(responses, "Error: Username is already taken!"));
+	}
+
+	@Test
+	void registerUser_concurrentSameEmail_onlyOneSucceeds() throws Exception {
+		List<ResponseEntity<?>> responses = signUpConcurrently(i -> signupRequest("mailer" + i, "mailer@noroff.no"));
+
+		assertEquals(1, count(responses, "User registered successfully!"));
+		assertEquals(THREADS - 1, count(responses, "Error: Email is already in use!"));
+	}
+
+	@Test
+	void logoutUser_revokesTheToken() throws Exception {
+		authController.registerUser(signupRequest("leaver", "leaver@noroff.no")).get();
+		String token = signIn("leaver").getAccessToken();
+		assertTrue(jwtUtil.validateJwtToken(token));
+
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/logout");
+		request.addHeader("Authorization", "Bearer " + token);
+		assertEquals(HttpStatus.OK, authController.logoutUser(request).getStatusCode());
+
+		assertEquals(ParsedJwt.Failure.REVOKED, jwtUtil.parseJwtToken(token).getFailure());
+		// A revoked token cannot be revoked again
+		assertEquals(HttpStatus.BAD_REQUEST, authController.logoutUser(request).getStatusCode());
+	}
+
+	@Test
+	void changeRoles_makesOlderTokensStale() throws Exception {
+		authController.registerUser(signupRequest("promoted", "promoted@noroff.no")).get();
+		JwtResponse before = signIn("promoted");
+		assertTrue(jwtUtil.validateJwtToken(before.getAccessToken()));
+
+		assertTrue(userAccountService.changeRoles(before.getId(), Set.of("mod")));
+		assertEquals(ParsedJwt.Failure.STALE, jwtUtil.parseJwtToken(before.getAccessToken()).getFailure());
+
+		// Signing in again gives a token with the new epoch and roles, and reloading keeps the epoch
+		JwtResponse after = signIn("promoted");
+		assertTrue(after.getRoles().contains("ROLE_MODERATOR"));
+		tokenEpochRegistry.reload();
+		assertTrue(jwtUtil.validateJwtToken(after.getAccessToken()));
+		assertEquals(ParsedJwt.Failure.STALE, jwtUtil.parseJwtToken(before.getAccessToken()).getFailure());
+
+		assertFalse(userAccountService.invalidateTokens(Long.MAX_VALUE));
+	}
+
+	private JwtResponse signIn(String username) throws Exception {
+		LoginRequest login = new LoginRequest();
+		login.setUsername(username);
+		login.setPassword("password");
+		return (JwtResponse) authController.authenticateUser(login).get().getBody();
+	}
+
+	private List<ResponseEntity<?>> signUpConcurrently(IntFunction<SignupRequest> requests) throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<CompletableFuture<ResponseEntity<?>>>> submitted = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				SignupRequest request = requests.apply(i);
+				submitted.add(clients.submit(() -> {
+					start.await();
+					return authController.registerUser(request);
+				}));
+			}
+			start.countDown();
+			List<ResponseEntity<?>> responses = new ArrayList<>();
+			for (Future<CompletableFuture<ResponseEntity<?>>> future : submitted) {
+				responses.add(future.get().get());
+			}
+			return responses;
+		} finally {
+			clients.shutdown();
+		}
+	}
+
+	private static long count(List<ResponseEntity<?>> responses, String message) {
+		return responses.stream()
+				.filter(response -> message.equals(((MessageResponse) response.getBody()).getMessage()))
+				.count();
+	}
+
+	private static SignupRequest signupRequest(String username, String email) {
+		SignupRequest request = new SignupRequest();
+		request.setUsername(username);
+		request.setEmail(email);
+		request.setPassword("password");
+		return request;
+	}
+
+}
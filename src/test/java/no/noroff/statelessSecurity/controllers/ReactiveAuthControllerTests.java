@@ -0,0 +1,78 @@
+package no.noroff.statelessSecurity.controllers;
+
+import no.noroff.statelessSecurity.models.dto.JwtResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+		properties = "noroff.app.bcryptStrength=4")
+@ActiveProfiles({"test", "reactive"})
+class ReactiveAuthControllerTests {
+
+	@Autowired
+	private WebTestClient client;
+
+	@Test
+	void signUpSignInAndUseTheToken() {
+		signUp("reactor", "reactor@noroff.no", "[\"mod\"]")
+				.expectStatus().isOk()
+				.expectBody().jsonPath("$.message").isEqualTo("User registered successfully!");
+		signUp("reactor", "other@noroff.no", "[\"user\"]")
+				.expectStatus().isBadRequest()
+				.expectBody().jsonPath("$.message").isEqualTo("Error: Username is already taken!");
+		signUp("another", "reactor@noroff.no", "[\"user\"]")
+				.expectStatus().isBadRequest()
+				.expectBody().jsonPath("$.message").isEqualTo("Error: Email is already in use!");
+
+		JwtResponse response = client.post().uri("/api/auth/signin")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"username\":\"reactor\",\"password\":\"password\"}")
+				.exchange()
+				.expectStatus().isOk()
+				.expectBody(JwtResponse.class).returnResult().getResponseBody();
+		assertEquals(List.of("ROLE_MODERATOR"), response.getRoles());
+		String token = response.getAccessToken();
+
+		get("/api/test/mod", token).expectStatus().isOk();
+		get("/api/test/user", token).expectStatus().isOk();
+		get("/api/test/admin", token).expectStatus().isForbidden();
+		get("/api/test/user", null).expectStatus().isUnauthorized();
+
+		client.post().uri("/api/auth/signin")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"username\":\"reactor\",\"password\":\"wrong\"}")
+				.exchange()
+				.expectStatus().isUnauthorized();
+
+		client.post().uri("/api/auth/logout")
+				.header("Authorization", "Bearer " + token)
+				.exchange()
+				.expectStatus().isOk();
+		get("/api/test/user", token).expectStatus().isUnauthorized();
+	}
+
+	private WebTestClient.ResponseSpec signUp(String username, String email, String roles) {
+		return client.post().uri("/api/auth/signup")
+				.contentType(MediaType.APPLICATION_JSON)
+				.bodyValue("{\"username\":\"" + username + "\",\"email\":\"" + email
+						+ "\",\"password\":\"password\",\"role\":" + roles + "}")
+				.exchange();
+	}
+
+	private WebTestClient.ResponseSpec get(String path, String token) {
+		WebTestClient.RequestHeadersSpec<?> request = client.get().uri(path);
+		if (token != null) {
+			request = request.header("Authorization", "Bearer " + token);
+		}
+		return request.exchange();
+	}
+
+}
@@ -0,0 +1,301 @@
+package no.noroff.statelessSecurity.loadtest;
+
+import no.noroff.statelessSecurity.models.dto.UserImportReport;
+import no.noroff.statelessSecurity.securityUtil.jwt.JwtUtil;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsServiceImpl;
+import no.noroff.statelessSecurity.services.UserImportService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ActiveProfilesResolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ Drives a mix of sign in, sign up and protected requests at the application over HTTP, from a number of
+ concurrent clients, and reports requests per second and latency percentiles for each kind of request.
+ The application runs on the embedded H2 database of the test profile, seeded with users before the test.
+ Run it once with -Dloadtest.stack=servlet and once with -Dloadtest.stack=reactive to compare the two stacks
+ under the same traffic.
+*/
+@Tag("loadtest")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles(resolver = AuthLoadTests.StackProfiles.class)
+class AuthLoadTests {
+
+	private static final String PASSWORD = "loadtest-password";
+
+	// Latencies are recorded in microseconds, up to a minute
+	private static final long HIGHEST_LATENCY_US = TimeUnit.MINUTES.toMicros(1);
+
+	@LocalServerPort
+	private int port;
+
+	@Value("${loadtest.stack}")
+	private String stack;
+	@Value("${loadtest.users}")
+	private int users;
+	@Value("${loadtest.threads}")
+	private int threads;
+	@Value("${loadtest.warmupSeconds}")
+	private int warmupSeconds;
+	@Value("${loadtest.durationSeconds}")
+	private int durationSeconds;
+	@Value("${loadtest.mix}")
+	private String mix;
+	@Value("${loadtest.reportDirectory}")
+	private String reportDirectory;
+
+	@Autowired
+	private UserImportService userImportService;
+
+	@Autowired
+	private UserDetailsServiceImpl userDetailsService;
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	private final HttpClient client = HttpClient.newHttpClient();
+	private final AtomicInteger signups = new AtomicInteger();
+	private final Map<Scenario, Stats> stats = new EnumMap<>(Scenario.class);
+	private volatile boolean recording;
+
+	// The kinds of requests we send, and which status each one should get
+	private enum Scenario {
+		SIGNIN, SIGNUP, USER, MOD, ADMIN
+	}
+
+	@Test
+	void authenticationMix() throws Exception {
+		List<SeededUser> seeded = seedUsers();
+		Scenario[] weighted = parseMix();
+		for (Scenario scenario : Scenario.values()) {
+			stats.put(scenario, new Stats());
+		}
+
+		ExecutorService clients = Executors.newFixedThreadPool(threads);
+		try {
+			runFor(clients, warmupSeconds, seeded, weighted);
+			for (Stats scenarioStats : stats.values()) {
+				scenarioStats.recorder.reset();
+			}
+			recording = true;
+			long start = System.nanoTime();
+			runFor(clients, durationSeconds, seeded, weighted);
+			recording = false;
+			report((System.nanoTime() - start) / 1e9);
+		} finally {
+			clients.shutdownNow();
+		}
+
+		for (Map.Entry<Scenario, Stats> entry : stats.entrySet()) {
+			assertEquals(0, entry.getValue().unexpected.sum(), entry.getKey() + " got unexpected responses");
+		}
+	}
+
+	// Imports the users through the bulk import, then creates a token for each of them
+	private List<SeededUser> seedUsers() throws IOException {
+		String[] roles = {"user", "mod", "admin"};
+		StringBuilder records = new StringBuilder();
+		for (int i = 0; i < users; i++) {
+			records.append("{\"username\":\"load").append(i)
+					.append("\",\"email\":\"load").append(i).append("@loadtest.no")
+					.append("\",\"password\":\"").append(PASSWORD)
+					.append("\",\"role\":[\"").append(roles[i % roles.length]).append("\"]}\n");
+		}
+		UserImportReport report = userImportService.importUsers(
+				new ByteArrayInputStream(records.toString().getBytes(StandardCharsets.UTF_8)));
+		assertEquals(users, report.getImported());
+
+		List<SeededUser> seeded = new ArrayList<>(users);
+		for (int i = 0; i < users; i++) {
+			UserDetailsImpl details = (UserDetailsImpl) userDetailsService.loadUserByUsername("load" + i);
+			String token = jwtUtil.generateJwtToken(
+					new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+			seeded.add(new SeededUser(details.getUsername(), token, i % roles.length == 1, i % roles.length == 2));
+		}
+		return seeded;
+	}
+
+	// Turns "signin:5,user:60" into an array where each scenario appears as often as its weight
+	private Scenario[] parseMix() {
+		List<Scenario> weighted = new ArrayList<>();
+		for (String part : mix.split(",")) {
+			String[] nameAndWeight = part.trim().split(":");
+			Scenario scenario = Scenario.valueOf(nameAndWeight[0].trim().toUpperCase());
+			for (int i = Integer.parseInt(nameAndWeight[1].trim()); i > 0; i--) {
+				weighted.add(scenario);
+			}
+		}
+		return weighted.toArray(new Scenario[0]);
+	}
+
+	private void runFor(ExecutorService clients, int seconds, List<SeededUser> seeded, Scenario[] weighted)
+			throws Exception {
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		List<Future<?>> running = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			running.add(clients.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (System.nanoTime() < end) {
+					Scenario scenario = weighted[random.nextInt(weighted.length)];
+					send(scenario, seeded.get(random.nextInt(seeded.size())));
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : running) {
+			future.get();
+		}
+	}
+
+	private void send(Scenario scenario, SeededUser user) throws IOException, InterruptedException {
+		HttpRequest request;
+		int expected = 200;
+		switch (scenario) {
+			case SIGNIN:
+				request = post("/api/auth/signin",
+						"{\"username\":\"" + user.username + "\",\"password\":\"" + PASSWORD + "\"}");
+				break;
+			case SIGNUP:
+				int n = signups.incrementAndGet();
+				request = post("/api/auth/signup",
+						"{\"username\":\"new" + n + "\",\"email\":\"new" + n + "@loadtest.no\",\"password\":\"" + PASSWORD + "\"}");
+				break;
+			case MOD:
+				request = get("/api/test/mod", user.token);
+				expected = user.moderator ? 200 : 403;
+				break;
+			case ADMIN:
+				request = get("/api/test/admin", user.token);
+				expected = user.admin ? 200 : 403;
+				break;
+			default:
+				request = get("/api/test/user", user.token);
+		}
+
+		long start = System.nanoTime();
+		int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+		long micros = (System.nanoTime() - start) / 1000;
+
+		if (!recording) {
+			return;
+		}
+		Stats scenarioStats = stats.get(scenario);
+		scenarioStats.recorder.recordValue(Math.min(micros, HIGHEST_LATENCY_US));
+		if (status == 503) {
+			// The password hashing executor is full, this is backpressure and not an error
+			scenarioStats.rejected.increment();
+		} else if (status != expected) {
+			scenarioStats.unexpected.increment();
+		}
+	}
+
+	private HttpRequest post(String path, String body) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build();
+	}
+
+	private HttpRequest get(String path, String token) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+				.header("Authorization", "Bearer " + token)
+				.GET()
+				.build();
+	}
+
+	private void report(double seconds) throws IOException {
+		Path directory = Path.of(reportDirectory);
+		Files.createDirectories(directory);
+		long totalCount = 0;
+
+		System.out.printf("%nLoad test of the %s stack: %d clients for %.1f s, %d seeded users%n",
+				stack, threads, seconds, users);
+		System.out.printf("%-8s %9s %10s %8s %8s %8s %8s %9s %9s %10s%n",
+				"request", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "rejected", "unexpected");
+		for (Map.Entry<Scenario, Stats> entry : stats.entrySet()) {
+			Histogram histogram = entry.getValue().recorder.getIntervalHistogram();
+			totalCount += histogram.getTotalCount();
+			System.out.printf("%-8s %9d %10.1f %8.2f %8.2f %8.2f %8.2f %9.2f %9d %10d%n",
+					entry.getKey().name().toLowerCase(),
+					histogram.getTotalCount(),
+					histogram.getTotalCount() / seconds,
+					histogram.getValueAtPercentile(50) / 1000.0,
+					histogram.getValueAtPercentile(90) / 1000.0,
+					histogram.getValueAtPercentile(99) / 1000.0,
+					histogram.getValueAtPercentile(99.9) / 1000.0,
+					histogram.getMaxValue() / 1000.0,
+					entry.getValue().rejected.sum(),
+					entry.getValue().unexpected.sum());
+			// The full distribution, in milliseconds, in the format HdrHistogram's plotter reads
+			try (PrintStream out = new PrintStream(
+					Files.newOutputStream(directory.resolve(entry.getKey().name().toLowerCase() + ".hgrm")))) {
+				histogram.outputPercentileDistribution(out, 1000.0);
+			}
+		}
+		System.out.printf("total    %9d %10.1f%n%n", totalCount, totalCount / seconds);
+	}
+
+	// The reactive stack is the same application started with the reactive profile
+	static final class StackProfiles implements ActiveProfilesResolver {
+		@Override
+		public String[] resolve(Class<?> testClass) {
+			if ("reactive".equals(System.getProperty("loadtest.stack"))) {
+				return new String[]{"test", "loadtest", "reactive"};
+			}
+			return new String[]{"test", "loadtest"};
+		}
+	}
+
+	private static final class Stats {
+		private final Recorder recorder = new Recorder(HIGHEST_LATENCY_US, 3);
+		private final LongAdder rejected = new LongAdder();
+		private final LongAdder unexpected = new LongAdder();
+	}
+
+	private static final class SeededUser {
+		private final String username;
+		private final String token;
+		private final boolean moderator;
+		private final boolean admin;
+
+		private SeededUser(String username, String token, boolean moderator, boolean admin) {
+			this.username = username;
+			this.token = token;
+			this.moderator = moderator;
+			this.admin = admin;
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package no.noroff.statelessSecurity.securityUtil.access;
+
+import no.noroff.statelessSecurity.controllers.TestController;
+import no.noroff.statelessSecurity.models.domain.RoleType;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.annotation.Jsr250MethodSecurityMetadataSource;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.expression.method.ExpressionBasedAnnotationAttributeFactory;
+import org.springframework.security.access.method.DelegatingMethodSecurityMetadataSource;
+import org.springframework.security.access.method.MethodSecurityMetadataSource;
+import org.springframework.security.access.prepost.PrePostAnnotationSecurityMetadataSource;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuthorizationRuleCompilerTests {
+
+	private static final int USER = RoleMask.of(RoleType.ROLE_USER);
+	private static final int MODERATOR = RoleMask.of(RoleType.ROLE_MODERATOR);
+	private static final int ADMIN = RoleMask.of(RoleType.ROLE_ADMIN);
+
+	@Test
+	void compilesRoleExpressions() {
+		assertEquals(ADMIN, AuthorizationRuleCompiler.compileExpression("hasRole('ADMIN')").getRoleMask());
+		assertEquals(ADMIN, AuthorizationRuleCompiler.compileExpression("hasRole('ROLE_ADMIN')").getRoleMask());
+		assertEquals(USER | MODERATOR | ADMIN, AuthorizationRuleCompiler.compileExpression(
+				"hasRole('USER') or hasRole('MODERATOR') or hasAuthority('ROLE_ADMIN')").getRoleMask());
+		assertEquals(USER | MODERATOR, AuthorizationRuleCompiler.compileExpression(
+				"hasAnyRole('USER', 'MODERATOR')").getRoleMask());
+
+		AuthorizationRule authenticated = AuthorizationRuleCompiler.compileExpression("isAuthenticated()");
+		assertTrue(authenticated.permits(RoleMask.NONE, true));
+		assertFalse(authenticated.permits(RoleMask.NONE, false));
+		assertTrue(AuthorizationRuleCompiler.compileExpression("permitAll").permits(RoleMask.NONE, false));
+	}
+
+	@Test
+	void refusesWhatItCannotCompile() {
+		for (String expression : List.of(
+				"hasRole('ADMIN') and isAuthenticated()",
+				"!hasRole('USER')",
+				"#id == principal.id",
+				"hasAuthority('ADMIN')",
+				"hasRole('SUPERUSER')",
+				"@accessChecker.check(authentication)")) {
+			assertThrows(IllegalArgumentException.class, () -> AuthorizationRuleCompiler.compileExpression(expression),
+					expression);
+		}
+	}
+
+	@Test
+	void compilesTheAnnotationsOfOurEndpoints() throws Exception {
+		MethodSecurityMetadataSource metadataSource = new DelegatingMethodSecurityMetadataSource(List.of(
+				new PrePostAnnotationSecurityMetadataSource(
+						new ExpressionBasedAnnotationAttributeFactory(new DefaultMethodSecurityExpressionHandler())),
+				new Jsr250MethodSecurityMetadataSource()));
+
+		assertEquals(USER | MODERATOR | ADMIN, compile(metadataSource, "userAccess").getRoleMask());
+		assertEquals(MODERATOR, compile(metadataSource, "moderatorAccess").getRoleMask());
+		assertEquals(ADMIN, compile(metadataSource, "adminAccess").getRoleMask());
+		assertFalse(compile(metadataSource, "adminAccess").permits(USER | MODERATOR, true));
+	}
+
+	private AuthorizationRule compile(MethodSecurityMetadataSource metadataSource, String name) throws Exception {
+		Method method = TestController.class.getMethod(name);
+		return AuthorizationRuleCompiler.compile(method, TestController.class,
+				metadataSource.getAttributes(method, TestController.class));
+	}
+}
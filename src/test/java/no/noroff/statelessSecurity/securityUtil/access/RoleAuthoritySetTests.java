@@ -0,0 +1,44 @@
+package no.noroff.statelessSecurity.securityUtil.access;
+
+import no.noroff.statelessSecurity.models.domain.RoleType;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoleAuthoritySetTests {
+
+	@Test
+	void looksLikeTheAuthoritiesItWasBuiltFrom() {
+		RoleAuthoritySet authorities = RoleAuthoritySet.of(List.of(
+				new SimpleGrantedAuthority("ROLE_ADMIN"), new SimpleGrantedAuthority("ROLE_USER")));
+
+		assertEquals(2, authorities.size());
+		assertEquals(List.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN")),
+				new ArrayList<>(authorities));
+		assertTrue(authorities.contains(new SimpleGrantedAuthority("ROLE_ADMIN")));
+		assertFalse(authorities.contains(new SimpleGrantedAuthority("ROLE_MODERATOR")));
+		assertTrue(authorities.hasRole(RoleType.ROLE_USER));
+		assertFalse(authorities.hasRole(RoleType.ROLE_MODERATOR));
+		assertEquals(EnumSet.of(RoleType.ROLE_USER, RoleType.ROLE_ADMIN), authorities.getRoles());
+		// Every user with a role shares its authority
+		assertSame(RoleAuthorities.of(RoleType.ROLE_USER), authorities.iterator().next());
+		assertThrows(UnsupportedOperationException.class, () -> authorities.add(new SimpleGrantedAuthority("ROLE_X")));
+	}
+
+	@Test
+	void keepsAuthoritiesThatAreNotOurRoles() {
+		GrantedAuthority other = new SimpleGrantedAuthority("ROLE_AUDITOR");
+		RoleAuthoritySet authorities = RoleAuthoritySet.of(List.of(new SimpleGrantedAuthority("ROLE_MODERATOR"), other));
+
+		assertEquals(2, authorities.size());
+		assertTrue(authorities.contains(other));
+		assertEquals(RoleMask.of(RoleType.ROLE_MODERATOR), authorities.getMask());
+		assertEquals(List.of(RoleAuthorities.of(RoleType.ROLE_MODERATOR), other), new ArrayList<>(authorities));
+	}
+}
@@ -0,0 +1,46 @@
+package no.noroff.statelessSecurity.securityUtil.access;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tests leave out the Prometheus endpoint unless metrics are asked for
+@SpringBootTest
+@AutoConfigureMetrics
+@ActiveProfiles("test")
+class RouteTableTests {
+
+	@Autowired
+	private RouteTable routeTable;
+
+	@Test
+	void classifiesOurRoutes() {
+		assertEquals(RouteTable.Access.PUBLIC, routeTable.lookup("/api/auth/signin"));
+		assertEquals(RouteTable.Access.PUBLIC, routeTable.lookup("/api/auth/signup"));
+		assertEquals(RouteTable.Access.PUBLIC, routeTable.lookup("/api/test/all"));
+		assertEquals(RouteTable.Access.PUBLIC, routeTable.lookup("/.well-known/jwks.json"));
+		assertEquals(RouteTable.Access.PUBLIC, routeTable.lookup("/actuator/health"));
+		assertEquals(RouteTable.Access.AUTHENTICATED, routeTable.lookup("/api/auth/logout"));
+		// permitAll in WebSecurityConfig, but the endpoints need a role
+		assertEquals(RouteTable.Access.ROLE_GATED, routeTable.lookup("/api/test/user"));
+		assertEquals(RouteTable.Access.ROLE_GATED, routeTable.lookup("/api/test/admin"));
+		assertEquals(RouteTable.Access.ROLE_GATED, routeTable.lookup("/actuator/prometheus"));
+	}
+
+	@Test
+	void neverTreatsUnknownPathsAsPublic() {
+		assertNull(routeTable.lookup("/api/admin/users/1/roles"));
+		assertNull(routeTable.lookup("/api/test/all/"));
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/test/all");
+		request.setServletPath("/api/test/all");
+		assertTrue(routeTable.isPublic(request));
+		request.setServletPath("/api/test/admin");
+		assertFalse(routeTable.isPublic(request));
+	}
+}
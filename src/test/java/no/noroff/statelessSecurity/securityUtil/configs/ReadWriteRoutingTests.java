@@ -0,0 +1,143 @@
+package no.noroff.statelessSecurity.securityUtil.configs;
+
+import no.noroff.statelessSecurity.repositories.UserRepository;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ The primary is the usual in-memory test database, the replica a second in-memory database. H2 names the
+ database a statement runs in, so we can see where each transaction went.
+*/
+@SpringBootTest(properties = {
+		"noroff.app.replicaUrls=" + ReadWriteRoutingTests.REPLICA_URL,
+		"noroff.app.replicaLagMs=0"
+})
+@ActiveProfiles("test")
+class ReadWriteRoutingTests {
+
+	static final String REPLICA_URL = "jdbc:h2:mem:replica;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+	private static final String PRIMARY_URL = "jdbc:h2:mem:securitydb;MODE=PostgreSQL;DB_CLOSE_DELAY=-1";
+	private static final String WHICH_DATABASE = "select database()";
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private PlatformTransactionManager transactions;
+
+	@Autowired
+	private UserDetailsServiceImpl userDetailsService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	private JdbcTemplate jdbc;
+
+	@BeforeEach
+	void setUp() {
+		jdbc = new JdbcTemplate(dataSource);
+		transactions = transactionManager;
+	}
+
+	// Routes over the same two databases as the application, with the lag the test needs
+	private void routeWithLag(long replicaLagMs) {
+		ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(
+				new DriverManagerDataSource(PRIMARY_URL, "sa", ""),
+				List.of(new DriverManagerDataSource(REPLICA_URL, "sa", "")),
+				replicaLagMs);
+		routing.afterPropertiesSet();
+		DataSource routed = new LazyConnectionDataSourceProxy(routing);
+		jdbc = new JdbcTemplate(routed);
+		transactions = new DataSourceTransactionManager(routed);
+	}
+
+	private String databaseOf(boolean readOnly) {
+		TransactionTemplate transaction = new TransactionTemplate(transactions);
+		transaction.setReadOnly(readOnly);
+		return transaction.execute(status -> jdbc.queryForObject(WHICH_DATABASE, String.class));
+	}
+
+	@Test
+	void readOnlyTransactionsGoToTheReplica() {
+		assertEquals("SECURITYDB", databaseOf(false));
+		assertEquals("REPLICA", databaseOf(true));
+	}
+
+	@Test
+	void readsRightAfterAWriteGoToThePrimary() {
+		routeWithLag(TimeUnit.MINUTES.toMillis(1));
+		databaseOf(false);
+
+		assertEquals("SECURITYDB", databaseOf(true));
+	}
+
+	@Test
+	void onlyCommittedWritesKeepReadsOnThePrimary() {
+		routeWithLag(TimeUnit.MINUTES.toMillis(1));
+
+		// Outside a transaction, as the health check reads, and in a transaction that is rolled back
+		assertEquals("SECURITYDB", jdbc.queryForObject(WHICH_DATABASE, String.class));
+		new TransactionTemplate(transactions).executeWithoutResult(status -> {
+			jdbc.queryForObject(WHICH_DATABASE, String.class);
+			status.setRollbackOnly();
+		});
+		assertEquals("REPLICA", databaseOf(true));
+	}
+
+	// The replica gets the primary's tables, but none of its rows
+	private JdbcTemplate emptyReplica() {
+		JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+		replica.execute("drop all objects");
+		for (String statement : jdbc.queryForList("script nodata", String.class)) {
+			replica.execute(statement);
+		}
+		return replica;
+	}
+
+	@Test
+	void usersAreLoadedFromTheReplica() {
+		// And a user the primary does not have
+		JdbcTemplate replica = emptyReplica();
+		replica.update("insert into users (id, username, email, password, token_epoch) values (1, 'replicated', 'r@noroff.no', 'hash', 0)");
+
+		UserDetailsImpl user = (UserDetailsImpl) userDetailsService.loadUserByUsername("replicated");
+
+		assertEquals("r@noroff.no", user.getEmail());
+		assertEquals(0, jdbc.queryForObject("select count(*) from users where username = 'replicated'", Integer.class));
+		assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nobody"));
+	}
+
+	@Test
+	void duplicatesAreLookedUpOnThePrimary() {
+		// A user the replica has not caught up with, as after a sign up failed on a duplicate and rolled back
+		emptyReplica();
+		jdbc.update("insert into users (id, username, email, password, token_epoch) values (1001, 'unreplicated', 'u@noroff.no', 'hash', 0)");
+		try {
+			assertFalse(userRepository.existsByUsername("unreplicated"));
+			assertTrue(userRepository.existsByUsernameOnPrimary("unreplicated"));
+			assertTrue(userRepository.existsByEmailOnPrimary("u@noroff.no"));
+		} finally {
+			jdbc.update("delete from users where id = 1001");
+		}
+	}
+}
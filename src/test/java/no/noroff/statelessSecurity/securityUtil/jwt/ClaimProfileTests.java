@@ -0,0 +1,62 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import no.noroff.statelessSecurity.models.domain.RoleType;
+import no.noroff.statelessSecurity.securityUtil.access.RoleAuthorities;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+@SpringBootTest(properties = {"noroff.app.jwtPrincipalMode=TOKEN", "noroff.app.jwtClaimProfile=COMPACT"})
+@ActiveProfiles("test")
+class ClaimProfileTests {
+
+	@Autowired
+	private JwtUtil jwtUtil;
+
+	private final UserDetailsImpl user = new UserDetailsImpl(42L, "alice", "alice@noroff.no", null,
+			List.of(RoleAuthorities.of(RoleType.ROLE_USER), RoleAuthorities.of(RoleType.ROLE_ADMIN)), 0);
+
+	private String generate(ClaimProfile claimProfile) {
+		Authentication authentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+		setField(jwtUtil, "claimProfile", claimProfile);
+		try {
+			return jwtUtil.generateJwtToken(authentication);
+		} finally {
+			setField(jwtUtil, "claimProfile", ClaimProfile.COMPACT);
+		}
+	}
+
+	private void assertUser(ParsedJwt parsed) {
+		assertTrue(parsed.isValid());
+		assertEquals(42L, parsed.getUserId());
+		UserDetailsImpl principal = parsed.getPrincipal();
+		assertEquals("alice", principal.getUsername());
+		assertEquals("alice@noroff.no", principal.getEmail());
+		assertEquals(EnumSet.of(RoleType.ROLE_USER, RoleType.ROLE_ADMIN), principal.getRoles());
+	}
+
+	@Test
+	void compactTokensAreShorterAndCarryTheSameUser() {
+		String compact = generate(ClaimProfile.COMPACT);
+		String standard = generate(ClaimProfile.STANDARD);
+
+		assertTrue(compact.length() < standard.length());
+		assertEquals(42, jwtUtil.parseJwtToken(compact).getClaims().get("u", Number.class).intValue());
+		assertUser(jwtUtil.parseJwtToken(compact));
+	}
+
+	@Test
+	void tokensOfTheOtherProfileAreStillAccepted() {
+		assertUser(jwtUtil.parseJwtToken(generate(ClaimProfile.STANDARD)));
+	}
+}
@@ -0,0 +1,42 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import no.noroff.statelessSecurity.models.domain.JwtSigningKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Starting with ES256 stores the keys of the current and the next slot
+@SpringBootTest(properties = "noroff.app.jwtAlgorithm=ES256")
+@ActiveProfiles("test")
+class DatabaseJwtKeyStoreTests {
+
+	@Autowired
+	private DatabaseJwtKeyStore keyStore;
+
+	@Autowired
+	private JwtKeyManager keyManager;
+
+	@Test
+	void theKeyManagerSignsWithAStoredKey() {
+		List<JwtSigningKey> stored = keyStore.findKeys("ES256");
+		assertEquals(2, stored.size());
+		assertEquals(keyManager.getSigningKey().getKid(), stored.get(0).getKid());
+		assertEquals(stored.get(0).getSlot() + 1, stored.get(1).getSlot());
+	}
+
+	@Test
+	void aSlotKeepsTheKeyStoredFirst() {
+		JwtSigningKey current = keyStore.findKeys("ES256").get(0);
+		JwtSigningKey other = new JwtSigningKey("ES256", current.getSlot(), "another-kid",
+				current.getPrivateKey(), current.getPublicKey());
+
+		assertFalse(keyStore.insertKey(other));
+		assertEquals(current.getKid(), keyStore.findKeys("ES256").get(0).getKid());
+	}
+
+}
@@ -0,0 +1,177 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.UnsupportedJwtException;
+import io.jsonwebtoken.impl.TextCodec;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ Runs the same tokens through Hs512Codec and jjwt, they must agree on every one the codec handles.
+*/
+class Hs512CodecTests {
+
+	private static final Key KEY = new SecretKeySpec(TextCodec.BASE64.decode("NoroffSecretKey"),
+			SignatureAlgorithm.HS512.getJcaName());
+	private static final Key OTHER_KEY = new SecretKeySpec(TextCodec.BASE64.decode("SomeoneElsesKey"),
+			SignatureAlgorithm.HS512.getJcaName());
+
+	private final Hs512Codec codec = new Hs512Codec(KEY);
+
+	private static List<Map<String, Object>> claimSets() {
+		long now = System.currentTimeMillis() / 1000;
+		List<Map<String, Object>> claimSets = new ArrayList<>();
+
+		Map<String, Object> standard = new LinkedHashMap<>();
+		standard.put("sub", "alice");
+		standard.put("jti", "q3Y8bW1cRk2dX0aZ7pLm4g");
+		standard.put("iat", now);
+		standard.put("exp", now + 3600);
+		standard.put("id", 42L);
+		standard.put("ep", 0);
+		standard.put("email", "alice@noroff.no");
+		standard.put("roles", List.of("USER", "ADMIN"));
+		claimSets.add(standard);
+
+		Map<String, Object> compact = new LinkedHashMap<>();
+		compact.put("sub", "bob");
+		compact.put("exp", now + 60);
+		compact.put("u", 3_000_000_000L);
+		compact.put("r", 5);
+		claimSets.add(compact);
+
+		// Everything JSON can hold, with strings that need escaping
+		Map<String, Object> odd = new LinkedHashMap<>();
+		odd.put("sub", "ø \"quoted\" back\\slash\ttab\u0001 €");
+		odd.put("flag", true);
+		odd.put("none", null);
+		odd.put("ratio", 0.25);
+		odd.put("negative", -17);
+		odd.put("nested", Map.of("list", List.of(1, "two", false)));
+		odd.put("empty", List.of());
+		claimSets.add(odd);
+
+		Map<String, Object> expired = new LinkedHashMap<>();
+		expired.put("sub", "carol");
+		expired.put("exp", now - 60);
+		claimSets.add(expired);
+		return claimSets;
+	}
+
+	private static String jjwtSign(Map<String, Object> claims, Key key) {
+		return Jwts.builder().setClaims(claims).signWith(SignatureAlgorithm.HS512, key).compact();
+	}
+
+	// What jjwt makes of the token, in the terms of ParsedJwt, with its claims when it is valid
+	private static ParsedJwt.Failure jjwtParse(String token, Map<String, Object> claims) {
+		try {
+			claims.putAll(Jwts.parser().setSigningKey(KEY).parseClaimsJws(token).getBody());
+			return ParsedJwt.Failure.NONE;
+		} catch (SignatureException e) {
+			return ParsedJwt.Failure.BAD_SIGNATURE;
+		} catch (MalformedJwtException e) {
+			return ParsedJwt.Failure.MALFORMED;
+		} catch (ExpiredJwtException e) {
+			return ParsedJwt.Failure.EXPIRED;
+		} catch (UnsupportedJwtException e) {
+			return ParsedJwt.Failure.UNSUPPORTED;
+		} catch (IllegalArgumentException e) {
+			return ParsedJwt.Failure.EMPTY;
+		}
+	}
+
+	private void assertSameOutcome(String token) {
+		Map<String, Object> expected = new HashMap<>();
+		ParsedJwt.Failure jjwt = jjwtParse(token, expected);
+		Hs512Codec.Result result = codec.decode(token);
+		if (result.isUnhandled()) {
+			return;
+		}
+		assertEquals(jjwt == ParsedJwt.Failure.NONE, result.isValid(), token);
+		if (result.isValid()) {
+			assertEquals(expected, new HashMap<>(result.getClaims()), token);
+		} else if (jjwt != ParsedJwt.Failure.MALFORMED) {
+			// jjwt reads the claims before it checks the signature, so it calls some tampered tokens malformed
+			assertEquals(jjwt, result.getFailure(), token);
+		}
+	}
+
+	@Test
+	void agreesWithJjwtOnItsTokens() {
+		for (Map<String, Object> claims : claimSets()) {
+			assertSameOutcome(jjwtSign(claims, KEY));
+			assertSameOutcome(jjwtSign(claims, OTHER_KEY));
+		}
+	}
+
+	@Test
+	void jjwtAcceptsTokensWeSign() {
+		for (Map<String, Object> claims : claimSets()) {
+			String token = codec.encode(claims);
+			assertEquals(jjwtSign(claims, KEY).substring(0, token.indexOf('.')), token.substring(0, token.indexOf('.')));
+			assertSameOutcome(token);
+		}
+		Map<String, Object> parsed = new HashMap<>();
+		assertEquals(ParsedJwt.Failure.NONE, jjwtParse(codec.encode(claimSets().get(0)), parsed));
+		assertEquals("alice@noroff.no", parsed.get("email"));
+		assertEquals(List.of("USER", "ADMIN"), parsed.get("roles"));
+	}
+
+	@Test
+	void agreesWithJjwtOnTamperedTokens() {
+		Random random = new Random(2021);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+		for (Map<String, Object> claims : claimSets()) {
+			String token = jjwtSign(claims, KEY);
+			for (int i = 0; i < 200; i++) {
+				char[] chars = token.toCharArray();
+				int position = random.nextInt(chars.length);
+				if (chars[position] == '.') {
+					continue;
+				}
+				chars[position] = alphabet.charAt(random.nextInt(alphabet.length()));
+				assertSameOutcome(new String(chars));
+			}
+			// Without a signature jjwt still looks at the expiry first, we refuse it without reading the claims
+			String unsigned = token.substring(0, token.lastIndexOf('.') + 1);
+			assertNotEquals(ParsedJwt.Failure.NONE, jjwtParse(unsigned, new HashMap<>()));
+			assertEquals(ParsedJwt.Failure.UNSUPPORTED, codec.decode(unsigned).getFailure());
+			// With another token's signature
+			String other = jjwtSign(claimSets().get(1), KEY);
+			assertSameOutcome(token.substring(0, token.lastIndexOf('.')) + other.substring(other.lastIndexOf('.')));
+		}
+	}
+
+	@Test
+	void leavesTokensNotInOurShapeToJjwt() {
+		String withKid = Jwts.builder().setHeaderParam(JwsHeader.KEY_ID, "key-1").setSubject("alice")
+				.signWith(SignatureAlgorithm.HS512, KEY).compact();
+		String hs256 = Jwts.builder().setSubject("alice").signWith(SignatureAlgorithm.HS256, KEY).compact();
+
+		assertTrue(codec.decode(withKid).isUnhandled());
+		assertTrue(codec.decode(hs256).isUnhandled());
+	}
+
+	@Test
+	void rejectsBrokenTokensWithoutThrowing() {
+		assertEquals(ParsedJwt.Failure.EMPTY, codec.decode("").getFailure());
+		assertEquals(ParsedJwt.Failure.MALFORMED, codec.decode("abc").getFailure());
+		assertEquals(ParsedJwt.Failure.MALFORMED, codec.decode("a.b.c.d").getFailure());
+		assertEquals(ParsedJwt.Failure.MALFORMED, codec.decode("a!.b.c").getFailure());
+	}
+}
@@ -0,0 +1,44 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import no.noroff.statelessSecurity.models.domain.JwtSigningKey;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/*
+ A JwtKeyStore for tests and benchmarks, several key managers given the same one behave like instances
+ sharing a database.
+*/
+public class InMemoryJwtKeyStore implements JwtKeyStore {
+
+	private final Map<String, JwtSigningKey> keys = new ConcurrentHashMap<>();
+
+	private static String slotOf(String algorithm, long slot) {
+		return algorithm + ":" + slot;
+	}
+
+	@Override
+	public List<JwtSigningKey> findKeys(String algorithm) {
+		return keys.values().stream()
+				.filter(key -> key.getAlgorithm().equals(algorithm))
+				.sorted(Comparator.comparingLong(JwtSigningKey::getSlot))
+				.collect(Collectors.toList());
+	}
+
+	@Override
+	public boolean insertKey(JwtSigningKey key) {
+		return keys.putIfAbsent(slotOf(key.getAlgorithm(), key.getSlot()), key) == null;
+	}
+
+	@Override
+	public void deleteKeysBefore(String algorithm, long slot) {
+		keys.values().removeIf(key -> key.getAlgorithm().equals(algorithm) && key.getSlot() < slot);
+	}
+
+	public int size() {
+		return keys.size();
+	}
+}
@@ -0,0 +1,151 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import io.jsonwebtoken.UnsupportedJwtException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+class JwtKeyManagerTests {
+
+	private static final long ROTATION_MS = 86400000;
+
+	private static final int EXPIRATION_MS = 10800000;
+
+	private JwtKeyManager keyManager(SignatureAlgorithm algorithm) {
+		return keyManager(algorithm, new InMemoryJwtKeyStore(), "NoroffSecretKey");
+	}
+
+	// Key managers given the same store act as instances sharing one database
+	private JwtKeyManager keyManager(SignatureAlgorithm algorithm, JwtKeyStore keyStore, String jwtSecret) {
+		JwtKeyManager keyManager = new JwtKeyManager();
+		setField(keyManager, "keyStore", keyStore);
+		setField(keyManager, "jwtSecret", jwtSecret);
+		setField(keyManager, "jwtExpirationMs", EXPIRATION_MS);
+		setField(keyManager, "algorithm", algorithm);
+		setField(keyManager, "keyRotationMs", ROTATION_MS);
+		keyManager.init();
+		return keyManager;
+	}
+
+	private String sign(JwtKeyManager keyManager, String subject) {
+		JwtKeyManager.JwtKey key = keyManager.getSigningKey();
+		return Jwts.builder()
+				.setHeaderParam(JwsHeader.KEY_ID, key.getKid())
+				.setSubject(subject)
+				.signWith(key.getAlgorithm(), key.getSigningKey())
+				.compact();
+	}
+
+	private List<String> publishedKids(JwtKeyManager keyManager) {
+		return keyManager.getJwks().stream().map(jwk -> (String) jwk.get("kid")).collect(Collectors.toList());
+	}
+
+	@Test
+	void tokensVerifyWithThePublishedKeyAlone() throws Exception {
+		JwtKeyManager keyManager = keyManager(SignatureAlgorithm.RS256);
+		String token = sign(keyManager, "user");
+		String kid = keyManager.getSigningKey().getKid();
+
+		// What another service does, with nothing but the key set
+		Map<String, Object> jwk = keyManager.getJwks().stream()
+				.filter(key -> kid.equals(key.get("kid")))
+				.findFirst()
+				.orElseThrow();
+		PublicKey publicKey = KeyFactory.getInstance("RSA").generatePublic(new RSAPublicKeySpec(
+				new BigInteger(1, Base64.getUrlDecoder().decode((String) jwk.get("n"))),
+				new BigInteger(1, Base64.getUrlDecoder().decode((String) jwk.get("e")))));
+
+		assertEquals("user", Jwts.parser().setSigningKey(publicKey).parseClaimsJws(token).getBody().getSubject());
+	}
+
+	@Test
+	void instancesAndRestartsShareOneKeySet() {
+		InMemoryJwtKeyStore keyStore = new InMemoryJwtKeyStore();
+		JwtKeyManager first = keyManager(SignatureAlgorithm.RS256, keyStore, "NoroffSecretKey");
+		JwtKeyManager second = keyManager(SignatureAlgorithm.RS256, keyStore, "NoroffSecretKey");
+
+		assertEquals(2, keyStore.size());
+		assertEquals(first.getSigningKey().getKid(), second.getSigningKey().getKid());
+		assertEquals(publishedKids(first), publishedKids(second));
+		String token = sign(first, "user");
+		assertEquals("user", Jwts.parser()
+				.setSigningKey(second.getVerificationKey(first.getSigningKey().getKid(), "RS256"))
+				.parseClaimsJws(token).getBody().getSubject());
+
+		JwtKeyManager restarted = keyManager(SignatureAlgorithm.RS256, keyStore, "NoroffSecretKey");
+		assertEquals(first.getSigningKey().getKid(), restarted.getSigningKey().getKid());
+	}
+
+	@Test
+	void asymmetricKeysNeedAKeyStoreAndTheSecretTheyWereStoredWith() {
+		JwtKeyManager inMemory = new JwtKeyManager();
+		setField(inMemory, "jwtSecret", "NoroffSecretKey");
+		setField(inMemory, "jwtExpirationMs", EXPIRATION_MS);
+		setField(inMemory, "algorithm", SignatureAlgorithm.ES256);
+		setField(inMemory, "keyRotationMs", ROTATION_MS);
+		assertThrows(IllegalStateException.class, inMemory::init);
+
+		InMemoryJwtKeyStore keyStore = new InMemoryJwtKeyStore();
+		keyManager(SignatureAlgorithm.ES256, keyStore, "NoroffSecretKey");
+		assertThrows(IllegalStateException.class,
+				() -> keyManager(SignatureAlgorithm.ES256, keyStore, "AnotherSecretKey"));
+	}
+
+	@Test
+	void rotationPublishesKeysAheadAndRetiresThemAfterTheirTokensExpire() {
+		InMemoryJwtKeyStore keyStore = new InMemoryJwtKeyStore();
+		JwtKeyManager keyManager = keyManager(SignatureAlgorithm.ES256, keyStore, "NoroffSecretKey");
+		String oldKid = keyManager.getSigningKey().getKid();
+		List<String> before = publishedKids(keyManager);
+		assertEquals(2, before.size());
+
+		// The first key retires when its slot ends
+		long retiredAt = (System.currentTimeMillis() / ROTATION_MS + 1) * ROTATION_MS;
+		keyManager.refresh(retiredAt);
+		String newKid = keyManager.getSigningKey().getKid();
+		assertTrue(before.contains(newKid), "the new signing key was published before it was used");
+		assertEquals(3, publishedKids(keyManager).size());
+		assertNotNull(keyManager.getVerificationKey(oldKid, "ES256"));
+
+		// Retired keys are kept while tokens signed with them may still be valid
+		keyManager.refresh(retiredAt + EXPIRATION_MS + 60000);
+		assertTrue(publishedKids(keyManager).contains(oldKid));
+
+		keyManager.refresh(retiredAt + EXPIRATION_MS + 60001);
+		assertFalse(publishedKids(keyManager).contains(oldKid));
+		assertEquals(2, keyStore.size());
+		assertThrows(SignatureException.class, () -> keyManager.getVerificationKey(oldKid, "ES256"));
+		assertThrows(SignatureException.class, () -> keyManager.getVerificationKey(null, "HS512"));
+	}
+
+	@Test
+	void tokensMustNameTheAlgorithmOfTheirKey() {
+		JwtKeyManager keyManager = keyManager(SignatureAlgorithm.RS256);
+		String kid = keyManager.getSigningKey().getKid();
+		assertThrows(UnsupportedJwtException.class, () -> keyManager.getVerificationKey(kid, "HS256"));
+		assertThrows(SignatureException.class, () -> keyManager.getVerificationKey("unknown", "RS256"));
+		// Tokens signed with the shared secret before the switch are still accepted
+		assertNotNull(keyManager.getVerificationKey(null, "HS512"));
+	}
+
+	@Test
+	void theSharedSecretIsNeverPublished() {
+		JwtKeyManager keyManager = keyManager(SignatureAlgorithm.HS512);
+		assertTrue(keyManager.getJwks().isEmpty());
+		assertNull(keyManager.getSigningKey().getKid());
+	}
+}
@@ -0,0 +1,50 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtPreValidatorTests {
+
+	private final JwtPreValidator preValidator = new JwtPreValidator(512, Set.of("HS512"));
+
+	private final String token = Jwts.builder()
+			.setSubject("user")
+			.signWith(SignatureAlgorithm.HS512, "NoroffSecretKey")
+			.compact();
+
+	@Test
+	void acceptsOurTokens() {
+		assertNull(preValidator.check(token));
+		// Checked in place, inside the Authorization header
+		assertNull(preValidator.check("Bearer " + token, 7));
+		assertEquals(JwtPreValidator.Rejection.EMPTY, preValidator.check("Bearer ", 7));
+	}
+
+	@Test
+	void rejectsTokensThatAreNotJwts() {
+		String[] parts = token.split("\\.");
+		assertEquals(JwtPreValidator.Rejection.EMPTY, preValidator.check(""));
+		assertEquals(JwtPreValidator.Rejection.TOO_LONG, preValidator.check(token + "A".repeat(512)));
+		assertEquals(JwtPreValidator.Rejection.STRUCTURE, preValidator.check(parts[0] + "." + parts[1]));
+		assertEquals(JwtPreValidator.Rejection.STRUCTURE, preValidator.check(parts[0] + "." + parts[1] + "."));
+		assertEquals(JwtPreValidator.Rejection.STRUCTURE, preValidator.check(token + ".extra"));
+		assertEquals(JwtPreValidator.Rejection.ALPHABET, preValidator.check(parts[0] + "." + parts[1] + "+/=." + parts[2]));
+		assertEquals(JwtPreValidator.Rejection.HEADER, preValidator.check("bm90IGpzb24." + parts[1] + "." + parts[2]));
+	}
+
+	@Test
+	void rejectsOtherAlgorithms() {
+		String[] parts = token.split("\\.");
+		for (String header : new String[]{"{\"alg\":\"none\"}", "{\"alg\" : \"HS256\", \"typ\":\"JWT\"}"}) {
+			String encoded = Base64.getUrlEncoder().withoutPadding().encodeToString(header.getBytes(StandardCharsets.UTF_8));
+			assertEquals(JwtPreValidator.Rejection.ALGORITHM, preValidator.check(encoded + "." + parts[1] + "." + parts[2]));
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import io.jsonwebtoken.impl.DefaultClaims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+/*
+ The verifier is a stub that counts how often it is asked, a token that is served from the cache is not
+ verified again.
+*/
+class JwtTokenCacheTests {
+
+	private final JwtTokenCache tokenCache = new JwtTokenCache();
+
+	private final AtomicInteger verifications = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() {
+		setField(tokenCache, "enabled", true);
+		setField(tokenCache, "maxSize", 100L);
+		tokenCache.init();
+	}
+
+	private Function<String, ParsedJwt> verifier(ParsedJwt result) {
+		return token -> {
+			verifications.incrementAndGet();
+			return result;
+		};
+	}
+
+	private static ParsedJwt validFor(long ms) {
+		return ParsedJwt.valid(new DefaultClaims().setSubject("alice")
+				.setExpiration(new Date(System.currentTimeMillis() + ms)), null);
+	}
+
+	@Test
+	void validTokensAreVerifiedOnce() {
+		ParsedJwt valid = validFor(60_000);
+
+		assertSame(valid, tokenCache.get("token.a.b", verifier(valid)));
+		assertSame(valid, tokenCache.get("token.a.b", verifier(valid)));
+		// The same token inside an Authorization header has the same key
+		assertSame(valid, tokenCache.get("Bearer token.a.b", 7, verifier(valid)));
+
+		assertEquals(1, verifications.get());
+	}
+
+	@Test
+	void lookupAndVerificationCanBeSplit() {
+		ParsedJwt valid = validFor(60_000);
+		assertNull(tokenCache.getIfPresent("Bearer token.a.b", 7));
+
+		assertSame(valid, tokenCache.verify("Bearer token.a.b", 7, verifier(valid)));
+
+		assertSame(valid, tokenCache.getIfPresent("Bearer token.a.b", 7));
+		assertSame(valid, tokenCache.get("token.a.b", verifier(valid)));
+		assertEquals(1, verifications.get());
+	}
+
+	@Test
+	void invalidTokensAreNeverCached() {
+		ParsedJwt badSignature = ParsedJwt.invalid(ParsedJwt.Failure.BAD_SIGNATURE);
+		tokenCache.get("token.bad.sig", verifier(badSignature));
+		tokenCache.get("token.bad.sig", verifier(badSignature));
+
+		// Nor are valid tokens without an expiry, they would never leave
+		ParsedJwt forever = ParsedJwt.valid(new DefaultClaims().setSubject("alice"), null);
+		tokenCache.get("token.no.exp", verifier(forever));
+		tokenCache.get("token.no.exp", verifier(forever));
+
+		assertEquals(4, verifications.get());
+		assertEquals(0, tokenCache.size());
+	}
+
+	@Test
+	void entriesExpireWithTheirToken() throws InterruptedException {
+		// Claims keep whole seconds, so this expires between half a second and a second and a half from now
+		ParsedJwt shortLived = validFor(1500);
+		tokenCache.get("token.short.lived", verifier(shortLived));
+		tokenCache.get("token.short.lived", verifier(shortLived));
+		assertEquals(1, verifications.get());
+
+		Thread.sleep(shortLived.getExpirationMs() - System.currentTimeMillis() + 100);
+		tokenCache.get("token.short.lived", verifier(ParsedJwt.invalid(ParsedJwt.Failure.EXPIRED)));
+
+		assertEquals(2, verifications.get());
+	}
+
+	@Test
+	void invalidatedTokensAreVerifiedAgain() {
+		ParsedJwt valid = validFor(60_000);
+		tokenCache.get("token.to.revoke", verifier(valid));
+		tokenCache.get("token.other", verifier(valid));
+
+		tokenCache.invalidate("token.to.revoke");
+		ParsedJwt revoked = ParsedJwt.invalid(ParsedJwt.Failure.REVOKED);
+
+		assertSame(revoked, tokenCache.get("token.to.revoke", verifier(revoked)));
+		assertSame(valid, tokenCache.get("token.other", verifier(valid)));
+		assertEquals(3, verifications.get());
+	}
+
+}
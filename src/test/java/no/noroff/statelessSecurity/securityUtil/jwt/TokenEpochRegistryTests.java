@@ -0,0 +1,38 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenEpochRegistryTests {
+
+	private final TokenEpochRegistry registry = new TokenEpochRegistry();
+
+	@Test
+	void agreesWithAMapThroughManyResizes() {
+		Map<Long, Integer> expected = new HashMap<>();
+		Random random = new Random(17);
+		for (int i = 0; i < 50000; i++) {
+			long userId = 1 + random.nextInt(20000);
+			int epoch = random.nextInt(100);
+			registry.put(userId, epoch);
+			expected.merge(userId, epoch, Math::max);
+		}
+		for (long userId = 1; userId <= 20000; userId++) {
+			assertEquals(expected.getOrDefault(userId, 0), registry.get(userId));
+		}
+		assertEquals(expected.size(), registry.size());
+	}
+
+	@Test
+	void epochsNeverGoDown() {
+		registry.put(7, 3);
+		registry.put(7, 2);
+		assertEquals(3, registry.get(7));
+		assertEquals(0, registry.get(8));
+	}
+}
@@ -0,0 +1,110 @@
+package no.noroff.statelessSecurity.securityUtil.jwt;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.util.ReflectionTestUtils.getField;
+import static org.springframework.test.util.ReflectionTestUtils.invokeMethod;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+/*
+ Buckets of 100 ms, so a test can wait for a bucket to expire. Tokens that should outlive the test expire
+ a minute from now.
+*/
+class TokenRevocationStoreTests {
+
+	private static final long BUCKET_MS = 100;
+
+	@TempDir
+	Path directory;
+
+	private static TokenRevocationStore store(int expectedTokens, String file) {
+		TokenRevocationStore store = new TokenRevocationStore();
+		setField(store, "bucketMs", BUCKET_MS);
+		setField(store, "expectedTokens", expectedTokens);
+		setField(store, "file", file);
+		store.init();
+		return store;
+	}
+
+	private static boolean bloomFilterMightContain(TokenRevocationStore store, String jti) {
+		long hash = invokeMethod(TokenRevocationStore.class, "hash", jti);
+		return invokeMethod(getField(store, "bloomFilter"), "mightContain", hash);
+	}
+
+	// Sleeps until every token expiring at this time is in a bucket before the current one
+	private static void waitForBucketToEnd(long expirationMs) throws InterruptedException {
+		Thread.sleep((expirationMs / BUCKET_MS + 1) * BUCKET_MS - System.currentTimeMillis() + 10);
+	}
+
+	@Test
+	void purgeDropsExpiredBucketsAndRebuildsTheBloomFilter() throws InterruptedException {
+		TokenRevocationStore store = store(1000, "");
+		long soon = System.currentTimeMillis() + 50;
+		long later = System.currentTimeMillis() + 60_000;
+		store.revoke("short-lived", soon);
+		store.revoke("long-lived", later);
+		assertTrue(bloomFilterMightContain(store, "short-lived"));
+
+		// Nothing has expired yet
+		store.purge();
+		assertEquals(2, store.size());
+
+		waitForBucketToEnd(soon);
+		Object before = getField(store, "bloomFilter");
+		store.purge();
+
+		assertEquals(1, store.size());
+		assertNotSame(before, getField(store, "bloomFilter"));
+		assertFalse(bloomFilterMightContain(store, "short-lived"));
+		assertFalse(store.isRevoked("short-lived", soon));
+		assertTrue(store.isRevoked("long-lived", later));
+	}
+
+	@Test
+	void revocationsSurviveARestart() throws IOException, InterruptedException {
+		String file = directory.resolve("revoked-tokens.txt").toString();
+		TokenRevocationStore store = store(1000, file);
+		long soon = System.currentTimeMillis() + 50;
+		long later = System.currentTimeMillis() + 60_000;
+		store.revoke("short-lived", soon);
+		store.revoke("long-lived", later);
+
+		// Purging writes the file again, with the end of each bucket as the expiry
+		waitForBucketToEnd(soon);
+		store.purge();
+		long bucketEnd = (later / BUCKET_MS + 1) * BUCKET_MS - 1;
+		assertEquals(List.of(bucketEnd + " long-lived"), Files.readAllLines(Path.of(file), StandardCharsets.UTF_8));
+
+		store.revoke("revoked-after-purge", later);
+		TokenRevocationStore restarted = store(1000, file);
+
+		assertEquals(2, restarted.size());
+		assertTrue(restarted.isRevoked("long-lived", later));
+		assertTrue(restarted.isRevoked("revoked-after-purge", later));
+		assertFalse(restarted.isRevoked("short-lived", soon));
+	}
+
+	@Test
+	void staysCorrectPastTheExpectedNumberOfTokens() {
+		// Ten times more than the Bloom filter was sized for, so it says maybe far more often
+		TokenRevocationStore store = store(100, "");
+		long later = System.currentTimeMillis() + 60_000;
+		for (int i = 0; i < 1000; i++) {
+			store.revoke("revoked-" + i, later);
+		}
+
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(store.isRevoked("revoked-" + i, later));
+			assertFalse(store.isRevoked("not-revoked-" + i, later));
+		}
+	}
+
+}
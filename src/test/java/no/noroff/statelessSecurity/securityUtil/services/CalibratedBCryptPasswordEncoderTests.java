@@ -0,0 +1,65 @@
+package no.noroff.statelessSecurity.securityUtil.services;
+
+import no.noroff.statelessSecurity.models.domain.User;
+import no.noroff.statelessSecurity.repositories.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The application hashes with strength 5, so strength 4 hashes are upgraded and strength 6 hashes are not
+@SpringBootTest(properties = "noroff.app.bcryptStrength=5")
+@ActiveProfiles("test")
+class CalibratedBCryptPasswordEncoderTests {
+
+	@Autowired
+	private AuthenticationManager authenticationManager;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Test
+	void upgradeEncoding_onlyWeakerHashes() {
+		CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+
+		assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+		assertFalse(encoder.upgradeEncoding(encoder.encode("password")));
+		assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("password")));
+		assertFalse(encoder.upgradeEncoding("not a hash"));
+	}
+
+	@Test
+	void calibrate_staysAtOrAboveTheMinimum() {
+		// No strength hashes in no time, so the minimum it is
+		assertEquals(4, CalibratedBCryptPasswordEncoder.calibrate(4, 0).getStrength());
+		// Strength 4 takes a few milliseconds and every step doubles that, 10 takes hundreds
+		int strength = CalibratedBCryptPasswordEncoder.calibrate(4, 25).getStrength();
+		assertTrue(strength > 4 && strength < 10, "strength " + strength);
+	}
+
+	@Test
+	void signIn_rehashesWeakerPasswords() {
+		String weak = new BCryptPasswordEncoder(4).encode("password");
+		String strong = new BCryptPasswordEncoder(6).encode("password");
+		userRepository.save(new User("weakhash", "weakhash@noroff.no", weak));
+		userRepository.save(new User("stronghash", "stronghash@noroff.no", strong));
+
+		signIn("weakhash");
+		signIn("stronghash");
+
+		String upgraded = userRepository.findByUsername("weakhash").orElseThrow().getPassword();
+		assertTrue(upgraded.startsWith("$2a$05$"), upgraded);
+		assertEquals(strong, userRepository.findByUsername("stronghash").orElseThrow().getPassword());
+	}
+
+	private void signIn(String username) {
+		assertTrue(authenticationManager.authenticate(
+				new UsernamePasswordAuthenticationToken(username, "password")).isAuthenticated());
+	}
+
+}
@@ -0,0 +1,108 @@
+package no.noroff.statelessSecurity.securityUtil.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.noroff.statelessSecurity.models.domain.User;
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+/*
+ A user is changed in the database behind the cache's back, as another instance or an admin would,
+ and the cache must only serve the old copy until it is evicted or its time is up.
+*/
+@DataJpaTest
+@Import({UserDetailsCache.class, UserDetailsServiceImpl.class, AuthMetrics.class, SimpleMeterRegistry.class})
+@ActiveProfiles("test")
+class UserDetailsCacheTests {
+
+	@Autowired
+	private UserDetailsCache userDetailsCache;
+
+	@Autowired
+	private UserDetailsServiceImpl userDetailsService;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@BeforeEach
+	void setUp() {
+		// The cache outlives each test's rolled back transaction
+		userDetailsCache.evictAll();
+		entityManager.persist(new User("alice", "alice@noroff.no", "hash"));
+		entityManager.persist(new User("bob", "bob@noroff.no", "hash"));
+		entityManager.flush();
+	}
+
+	private void changeEmail(String username, String email) {
+		entityManager.getEntityManager()
+				.createNativeQuery("update users set email = :email where username = :username")
+				.setParameter("email", email)
+				.setParameter("username", username)
+				.executeUpdate();
+		entityManager.clear();
+	}
+
+	private static String emailOf(UserDetailsCache cache, String username) {
+		return ((UserDetailsImpl) cache.loadUserByUsername(username)).getEmail();
+	}
+
+	@Test
+	void evict_reloadsTheUser() {
+		assertEquals("alice@noroff.no", emailOf(userDetailsCache, "alice"));
+		changeEmail("alice", "alice@example.com");
+		assertEquals("alice@noroff.no", emailOf(userDetailsCache, "alice"));
+
+		userDetailsCache.evict("alice");
+
+		assertEquals("alice@example.com", emailOf(userDetailsCache, "alice"));
+	}
+
+	@Test
+	void updatePassword_evictsTheUser() {
+		UserDetailsImpl cached = (UserDetailsImpl) userDetailsCache.loadUserByUsername("alice");
+
+		userDetailsService.updatePassword(cached, "upgraded");
+		entityManager.clear();
+
+		assertEquals("upgraded", userDetailsCache.loadUserByUsername("alice").getPassword());
+	}
+
+	@Test
+	void evictAll_reloadsEveryUser() {
+		emailOf(userDetailsCache, "alice");
+		emailOf(userDetailsCache, "bob");
+		changeEmail("alice", "alice@example.com");
+		changeEmail("bob", "bob@example.com");
+
+		userDetailsCache.evictAll();
+
+		assertEquals("alice@example.com", emailOf(userDetailsCache, "alice"));
+		assertEquals("bob@example.com", emailOf(userDetailsCache, "bob"));
+	}
+
+	@Test
+	void entriesExpireAfterTheirTtl() throws InterruptedException {
+		UserDetailsCache shortLived = new UserDetailsCache();
+		setField(shortLived, "userDetailsService", userDetailsService);
+		setField(shortLived, "enabled", true);
+		setField(shortLived, "ttlMs", 200L);
+		setField(shortLived, "maxSize", 100L);
+		shortLived.init();
+
+		assertEquals("alice@noroff.no", emailOf(shortLived, "alice"));
+		changeEmail("alice", "alice@example.com");
+
+		Thread.sleep(300);
+
+		assertEquals("alice@example.com", emailOf(shortLived, "alice"));
+	}
+
+}
@@ -0,0 +1,83 @@
+package no.noroff.statelessSecurity.securityUtil.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import no.noroff.statelessSecurity.models.domain.Role;
+import no.noroff.statelessSecurity.models.domain.RoleType;
+import no.noroff.statelessSecurity.models.domain.User;
+import no.noroff.statelessSecurity.securityUtil.metrics.AuthMetrics;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({UserDetailsServiceImpl.class, UserDetailsCache.class, AuthMetrics.class, SimpleMeterRegistry.class})
+@ActiveProfiles("test")
+class UserDetailsServiceImplTests {
+
+	@Autowired
+	private UserDetailsServiceImpl userDetailsService;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		Role user = entityManager.persist(new Role(RoleType.ROLE_USER));
+		Role admin = entityManager.persist(new Role(RoleType.ROLE_ADMIN));
+		User alice = new User("alice", "alice@noroff.no", "hash");
+		alice.setRoles(Set.of(user, admin));
+		entityManager.persist(alice);
+		entityManager.persist(new User("bob", "bob@noroff.no", "hash"));
+		entityManager.flush();
+		entityManager.clear();
+
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void loadUserByUsername_usesOneStatement() {
+		UserDetailsImpl details = (UserDetailsImpl) userDetailsService.loadUserByUsername("alice");
+
+		assertEquals(1, statistics.getPrepareStatementCount());
+		assertEquals(0, statistics.getEntityLoadCount());
+		assertEquals("alice@noroff.no", details.getEmail());
+		assertEquals("hash", details.getPassword());
+		assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), details.getAuthorities().stream()
+				.map(GrantedAuthority::getAuthority)
+				.collect(Collectors.toSet()));
+	}
+
+	@Test
+	void loadUserByUsername_userWithoutRoles() {
+		UserDetailsImpl details = (UserDetailsImpl) userDetailsService.loadUserByUsername("bob");
+
+		assertEquals(1, statistics.getPrepareStatementCount());
+		assertTrue(details.getAuthorities().isEmpty());
+	}
+
+	@Test
+	void loadUserByUsername_unknownUser() {
+		assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("nobody"));
+	}
+
+}
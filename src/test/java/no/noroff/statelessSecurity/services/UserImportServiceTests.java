@@ -0,0 +1,111 @@
+package no.noroff.statelessSecurity.services;
+
+import no.noroff.statelessSecurity.models.dto.UserImportReport;
+import no.noroff.statelessSecurity.models.dto.UserImportResult;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsImpl;
+import no.noroff.statelessSecurity.securityUtil.services.UserDetailsServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"noroff.app.bcryptStrength=4", "noroff.app.importBatchSize=3"})
+@ActiveProfiles("test")
+class UserImportServiceTests {
+
+	@Autowired
+	private UserImportService userImportService;
+
+	@Autowired
+	private UserDetailsServiceImpl userDetailsService;
+
+	@Autowired
+	private PasswordEncoder encoder;
+
+	@Test
+	void importUsers_jsonArray() throws IOException {
+		UserImportReport report = importUsers("[" +
+				"{\"username\":\"imp1\",\"email\":\"imp1@noroff.no\",\"password\":\"secret1\",\"role\":[\"admin\",\"mod\"]}," +
+				"{\"username\":\"imp2\",\"email\":\"imp2@noroff.no\",\"password\":\"secret2\"}," +
+				"{\"username\":\"imp1\",\"email\":\"other@noroff.no\",\"password\":\"secret3\"}," +
+				"{\"username\":\"imp3\",\"email\":\"imp2@noroff.no\",\"password\":\"secret4\"}," +
+				"{\"username\":\"x\",\"email\":\"imp5@noroff.no\",\"password\":\"secret5\"}," +
+				"{\"username\":\"imp6\",\"email\":\"a@\",\"password\":\"secret6\"}" +
+				"]");
+
+		assertEquals(6, report.getTotal());
+		assertEquals(2, report.getImported());
+		List<String> messages = report.getResults().stream()
+				.map(UserImportResult::getMessage)
+				.collect(Collectors.toList());
+		assertEquals(List.of(
+				"User registered successfully!",
+				"User registered successfully!",
+				"Error: Username is already taken!",
+				"Error: Email is already in use!",
+				"Error: username size must be between 3 and 20",
+				"Error: email must be a well-formed email address"), messages);
+
+		UserDetailsImpl imported = (UserDetailsImpl) userDetailsService.loadUserByUsername("imp1");
+		assertTrue(encoder.matches("secret1", imported.getPassword()));
+		assertEquals(Set.of("ROLE_ADMIN", "ROLE_MODERATOR"), imported.getAuthorities().stream()
+				.map(GrantedAuthority::getAuthority)
+				.collect(Collectors.toSet()));
+	}
+
+	@Test
+	void importUsers_ndjson() throws IOException {
+		UserImportReport report = importUsers(
+				"{\"username\":\"nd1\",\"email\":\"nd1@noroff.no\",\"password\":\"secret1\"}\n" +
+				"{\"username\":\"nd2\",\"email\":\"nd2@noroff.no\",\"password\":\"secret2\"}\n");
+
+		assertEquals(2, report.getImported());
+		assertEquals(Set.of("ROLE_USER"), userDetailsService.loadUserByUsername("nd2").getAuthorities().stream()
+				.map(GrantedAuthority::getAuthority)
+				.collect(Collectors.toSet()));
+	}
+
+	@Test
+	void importUsers_rejectedRecordDoesNotTakeItsUsername() throws IOException {
+		UserImportReport report = importUsers(
+				"{\"username\":\"dup1\",\"email\":\"dup@noroff.no\",\"password\":\"secret1\"}\n" +
+				"{\"username\":\"dup2\",\"email\":\"dup@noroff.no\",\"password\":\"secret2\"}\n" +
+				"{\"username\":\"dup2\",\"email\":\"dup3@noroff.no\",\"password\":\"secret3\"}\n");
+
+		List<String> messages = report.getResults().stream()
+				.map(UserImportResult::getMessage)
+				.collect(Collectors.toList());
+		assertEquals(List.of(
+				"User registered successfully!",
+				"Error: Email is already in use!",
+				"User registered successfully!"), messages);
+		assertEquals("dup3@noroff.no", ((UserDetailsImpl) userDetailsService.loadUserByUsername("dup2")).getEmail());
+	}
+
+	@Test
+	void importUsers_brokenRecordStopsImport() throws IOException {
+		UserImportReport report = importUsers(
+				"{\"username\":\"br1\",\"email\":\"br1@noroff.no\",\"password\":\"secret1\"}\n" +
+				"{\"username\": oops}\n");
+
+		assertEquals(1, report.getImported());
+		assertEquals(2, report.getTotal());
+		assertFalse(report.getResults().get(1).isImported());
+	}
+
+	private UserImportReport importUsers(String body) throws IOException {
+		return userImportService.importUsers(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+	}
+
+}